@@ -0,0 +1,40 @@
+package be.bagofwords.miniorm.benchmarks;
+
+import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.miniorm.DatabaseService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An in-memory H2 database with the tables of the benchmark entities. Every benchmark uses its own database, so the rows
+ * of one benchmark do not influence another.
+ */
+class BenchmarkDatabase {
+
+    private final ApplicationContext context;
+    final DatabaseService databaseService;
+
+    BenchmarkDatabase(String name) {
+        Map<String, String> config = new HashMap<>();
+        config.put("jdbc.url", "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        context = new ApplicationContext(config);
+        databaseService = context.getBean(DatabaseService.class);
+        databaseService.execute("create table " + Row.TABLE + " (id bigint auto_increment primary key, name varchar(100), amount int, score double, created timestamp, active boolean, color varchar(20))");
+        databaseService.execute("create table " + RowWithoutId.TABLE + " (name varchar(100), amount int, score double, created timestamp, active boolean, color varchar(20))");
+    }
+
+    <T> T getBean(Class<T> beanClass) {
+        return context.getBean(beanClass);
+    }
+
+    void truncate() {
+        databaseService.execute("truncate table " + Row.TABLE);
+        databaseService.execute("truncate table " + RowWithoutId.TABLE);
+    }
+
+    void close() {
+        databaseService.execute("drop all objects");
+        context.terminate();
+    }
+}
@@ -0,0 +1,5 @@
+package be.bagofwords.miniorm.benchmarks;
+
+public enum Color {
+    RED, GREEN, BLUE
+}
@@ -0,0 +1,52 @@
+package be.bagofwords.miniorm.benchmarks;
+
+import be.bagofwords.miniorm.Table;
+
+import java.util.Date;
+
+/**
+ * Entities with a single column, one for every column type in {@link MappingBenchmark}.
+ */
+public class ColumnTypes {
+
+    @Table("type_int")
+    public static class IntColumn {
+        public int field;
+    }
+
+    @Table("type_long")
+    public static class LongColumn {
+        public long field;
+    }
+
+    @Table("type_double")
+    public static class DoubleColumn {
+        public double field;
+    }
+
+    @Table("type_boolean")
+    public static class BooleanColumn {
+        public boolean field;
+    }
+
+    @Table("type_string")
+    public static class StringColumn {
+        public String field;
+    }
+
+    @Table("type_date")
+    public static class DateColumn {
+        public Date field;
+    }
+
+    @Table("type_enum")
+    public static class EnumColumn {
+        public Color field;
+    }
+
+    @Table("type_bytes")
+    public static class BytesColumn {
+        public byte[] field;
+    }
+
+}
@@ -0,0 +1,75 @@
+package be.bagofwords.miniorm.benchmarks;
+
+import be.bagofwords.miniorm.data.InsertMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts of a single object and of batches, for objects with an id (the generated keys are read back and set on the
+ * objects) and without an id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int numOfObjects;
+
+    @Param({"BATCH", "MULTI_ROW"})
+    public InsertMode insertMode;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("insert");
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        database.truncate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Long> insertWithGeneratedIds() {
+        List<Row> rows = new ArrayList<>(numOfObjects);
+        for (int i = 0; i < numOfObjects; i++) {
+            rows.add(Row.create(i));
+        }
+        return database.databaseService.insertObjects(rows, insertMode);
+    }
+
+    @Benchmark
+    public List<Long> insertWithoutIds() {
+        List<RowWithoutId> rows = new ArrayList<>(numOfObjects);
+        for (int i = 0; i < numOfObjects; i++) {
+            rows.add(RowWithoutId.create(i));
+        }
+        return database.databaseService.insertObjects(rows, insertMode);
+    }
+
+}
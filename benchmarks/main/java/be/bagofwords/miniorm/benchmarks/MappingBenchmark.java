@@ -0,0 +1,107 @@
+package be.bagofwords.miniorm.benchmarks;
+
+import be.bagofwords.miniorm.EntityMappingService;
+import be.bagofwords.miniorm.mapping.EntityMapping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping a single column of every supported type: createObject constructs an object from values that were
+ * already read, readObjects also includes reading the values from the result set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    private static final int NUM_OF_ROWS = 1000;
+
+    @Param({"int", "long", "double", "boolean", "string", "date", "enum", "bytes"})
+    public String columnType;
+
+    private BenchmarkDatabase database;
+    private Class<?> entityClass;
+    private EntityMapping<?> mapping;
+    private Object[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase("mapping");
+        switch (columnType) {
+            case "int":
+                setUp(ColumnTypes.IntColumn.class, "int", 42);
+                break;
+            case "long":
+                setUp(ColumnTypes.LongColumn.class, "bigint", 42L);
+                break;
+            case "double":
+                setUp(ColumnTypes.DoubleColumn.class, "double", 4.2);
+                break;
+            case "boolean":
+                setUp(ColumnTypes.BooleanColumn.class, "boolean", true);
+                break;
+            case "string":
+                setUp(ColumnTypes.StringColumn.class, "varchar(100)", "a short string value");
+                break;
+            case "date":
+                setUp(ColumnTypes.DateColumn.class, "timestamp", new Date());
+                break;
+            case "enum":
+                setUp(ColumnTypes.EnumColumn.class, "varchar(20)", Color.GREEN);
+                break;
+            case "bytes":
+                setUp(ColumnTypes.BytesColumn.class, "varbinary(100)", new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown column type " + columnType);
+        }
+    }
+
+    private void setUp(Class<?> entityClass, String sqlType, Object value) throws Exception {
+        this.entityClass = entityClass;
+        this.mapping = database.getBean(EntityMappingService.class).getMapping(entityClass);
+        this.values = new Object[]{value};
+        database.databaseService.execute("create table " + mapping.getTable() + " (field " + sqlType + ")");
+        List<Object> objects = new ArrayList<>();
+        for (int i = 0; i < NUM_OF_ROWS; i++) {
+            objects.add(mapping.createObject(values));
+        }
+        database.databaseService.insertObjects(objects);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Object createObject() throws Exception {
+        return mapping.createObject(values);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<?> readObjects() {
+        return database.databaseService.readObjects(entityClass);
+    }
+
+}
@@ -0,0 +1,72 @@
+package be.bagofwords.miniorm.benchmarks;
+
+import be.bagofwords.iterator.CloseableIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads all rows of a table into a list with readObjects, or one by one with readObjectsIt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int numOfRows;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("read");
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < numOfRows; i++) {
+            rows.add(Row.create(i));
+            if (rows.size() == 10_000) {
+                database.databaseService.insertObjects(rows);
+                rows.clear();
+            }
+        }
+        database.databaseService.insertObjects(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Row> readObjects() {
+        return database.databaseService.readObjects(Row.class);
+    }
+
+    @Benchmark
+    public void readObjectsIt(Blackhole blackhole) {
+        try (CloseableIterator<Row> iterator = database.databaseService.readObjectsIt(Row.class)) {
+            while (iterator.hasNext()) {
+                blackhole.consume(iterator.next());
+            }
+        }
+    }
+
+}
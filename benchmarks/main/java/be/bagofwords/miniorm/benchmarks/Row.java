@@ -0,0 +1,30 @@
+package be.bagofwords.miniorm.benchmarks;
+
+import be.bagofwords.miniorm.Table;
+
+import java.util.Date;
+
+@Table(Row.TABLE)
+public class Row {
+
+    static final String TABLE = "bench_row";
+
+    public Long id;
+    public String name;
+    public int amount;
+    public double score;
+    public Date created;
+    public boolean active;
+    public Color color;
+
+    public static Row create(int ind) {
+        Row row = new Row();
+        row.name = "row " + ind;
+        row.amount = ind;
+        row.score = ind / 3.0;
+        row.created = new Date();
+        row.active = ind % 2 == 0;
+        row.color = Color.values()[ind % Color.values().length];
+        return row;
+    }
+}
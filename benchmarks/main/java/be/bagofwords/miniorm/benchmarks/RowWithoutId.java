@@ -0,0 +1,32 @@
+package be.bagofwords.miniorm.benchmarks;
+
+import be.bagofwords.miniorm.Table;
+
+import java.util.Date;
+
+/**
+ * Same columns as {@link Row} without an id, so inserts do not retrieve generated keys.
+ */
+@Table(RowWithoutId.TABLE)
+public class RowWithoutId {
+
+    static final String TABLE = "bench_row_without_id";
+
+    public String name;
+    public int amount;
+    public double score;
+    public Date created;
+    public boolean active;
+    public Color color;
+
+    public static RowWithoutId create(int ind) {
+        RowWithoutId row = new RowWithoutId();
+        row.name = "row " + ind;
+        row.amount = ind;
+        row.score = ind / 3.0;
+        row.created = new Date();
+        row.active = ind % 2 == 0;
+        row.color = Color.values()[ind % Color.values().length];
+        return row;
+    }
+}
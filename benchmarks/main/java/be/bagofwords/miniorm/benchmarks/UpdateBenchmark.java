@@ -0,0 +1,81 @@
+package be.bagofwords.miniorm.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates of single objects by id, and insertOrUpdateObject of existing rows (a read and an update) and of new rows (a
+ * read and an insert).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBenchmark {
+
+    private static final int NUM_OF_ROWS = 1000;
+
+    private BenchmarkDatabase database;
+    private List<Row> rows;
+    private int ind;
+    private long nextNewId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("update");
+        rows = new ArrayList<>();
+        for (int i = 0; i < NUM_OF_ROWS; i++) {
+            rows.add(Row.create(i));
+        }
+        database.databaseService.insertObjects(rows);
+        nextNewId = rows.get(rows.size() - 1).id + 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void updateObjectWithId() {
+        Row row = nextRow();
+        row.amount++;
+        database.databaseService.updateObjectWithId(row);
+    }
+
+    @Benchmark
+    public void insertOrUpdateExistingObject() {
+        Row row = nextRow();
+        row.amount++;
+        database.databaseService.insertOrUpdateObject(row);
+    }
+
+    @Benchmark
+    public void insertOrUpdateNewObject() {
+        Row row = Row.create(ind);
+        row.id = nextNewId++;
+        database.databaseService.insertOrUpdateObject(row);
+    }
+
+    private Row nextRow() {
+        ind = (ind + 1) % NUM_OF_ROWS;
+        return rows.get(ind);
+    }
+
+}
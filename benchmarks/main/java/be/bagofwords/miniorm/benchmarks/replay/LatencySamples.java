@@ -0,0 +1,58 @@
+package be.bagofwords.miniorm.benchmarks.replay;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every sample, so percentiles are exact instead of the power of two buckets of
+ * {@link be.bagofwords.miniorm.metrics.Histogram}. A replay holds at most a few million samples, which easily fit in
+ * memory.
+ */
+class LatencySamples {
+
+    private long[] samples = new long[1024];
+    private int count;
+
+    synchronized void add(long value) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = value;
+    }
+
+    synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the samples ordered from small to large
+     */
+    synchronized long[] getSorted() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * @param sorted     samples ordered from small to large
+     * @param percentile between 0 and 100
+     */
+    static long getPercentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(sorted.length * percentile / 100);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    /**
+     * @return p50, p90, p99 and max of the samples, in milliseconds
+     */
+    String summarize(long unitsPerMs) {
+        long[] sorted = getSorted();
+        return String.format("p50=%.3f p90=%.3f p99=%.3f max=%.3f",
+                getPercentile(sorted, 50) / (double) unitsPerMs,
+                getPercentile(sorted, 90) / (double) unitsPerMs,
+                getPercentile(sorted, 99) / (double) unitsPerMs,
+                getPercentile(sorted, 100) / (double) unitsPerMs);
+    }
+}
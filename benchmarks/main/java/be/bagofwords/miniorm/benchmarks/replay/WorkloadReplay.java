@@ -0,0 +1,478 @@
+package be.bagofwords.miniorm.benchmarks.replay;
+
+import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.miniorm.DatabaseService;
+import be.bagofwords.miniorm.metrics.Histogram;
+import be.bagofwords.miniorm.workload.CheckoutEvent;
+import be.bagofwords.miniorm.workload.HoldEvent;
+import be.bagofwords.miniorm.workload.Workload;
+import be.bagofwords.miniorm.workload.WorkloadEvent;
+import be.bagofwords.miniorm.workload.WorkloadReader;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a workload recorded with {@link DatabaseService#startRecording(File)} against a database, and reports the
+ * throughput, the latency percentiles of every operation and the time spent waiting for connections from the pool. Run
+ * it from the benchmarks jar:
+ * <pre>
+ * java -cp benchmarks.jar be.bagofwords.miniorm.benchmarks.replay.WorkloadReplay workload.bin --schema schema.sql --concurrency 16 --speed-up 2
+ * </pre>
+ * The recording only contains the shape of the parameters, so statements are executed with synthetic values of the
+ * recorded type and length. Numbers are taken from a single increasing sequence, so inserted keys do not collide. The
+ * tables are not part of the recording, pass a file with the statements that create them with --schema.
+ * <p>
+ * Statements that a thread executed while it held a connection are replayed on a single connection, which is held as
+ * long as it was held in the recording, so the contention on the pool is the same. Such a group of statements is
+ * replayed as one transaction, even if it consisted of several transactions in the recording. Statements that were not
+ * executed within a recorded hold, such as reads that stream their rows, take a connection of their own.
+ * <p>
+ * Connections are taken at their recorded time divided by the speed-up factor, by at most concurrency threads at the
+ * same time. Statements and the end of a hold are delayed by the same factor. A speed-up of 0 replays everything as fast
+ * as possible, without keeping the recorded hold times. Latency is measured from the start to the end of a statement,
+ * the response time also includes the time a statement was delayed because all threads were busy.
+ */
+public class WorkloadReplay {
+
+    private static final String DEFAULT_JDBC_URL = "jdbc:h2:mem:replay;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final int DEFAULT_STRING_LENGTH = 16;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final long NANOS_PER_MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MICROS_PER_MS = TimeUnit.MILLISECONDS.toMicros(1);
+
+    private final DatabaseService databaseService;
+    private final Workload workload;
+    private final int concurrency;
+    private final double speedUp;
+    private final List<Unit> units;
+    private final AtomicInteger nextUnit = new AtomicInteger();
+    private final AtomicLong nextValue = new AtomicLong();
+    private final AtomicLong numOfSkipped = new AtomicLong();
+    private final AtomicLong numOfFailedConnections = new AtomicLong();
+    private final AtomicReference<Exception> firstError = new AtomicReference<>();
+    private final Map<String, OperationResults> results = new TreeMap<>();
+    private long replayNanos;
+
+    public WorkloadReplay(DatabaseService databaseService, Workload workload, int concurrency, double speedUp) {
+        this.databaseService = databaseService;
+        this.workload = workload;
+        this.concurrency = concurrency;
+        this.speedUp = speedUp;
+        for (WorkloadEvent event : workload.statements) {
+            results.computeIfAbsent(getKey(event), key -> new OperationResults()).recorded.add(event.durationMicros);
+        }
+        this.units = groupByConnection(workload);
+    }
+
+    /**
+     * @return the holds of the workload with the statements that were executed on them, and a unit for every statement
+     * that was not executed within a hold, ordered by start
+     */
+    private static List<Unit> groupByConnection(Workload workload) {
+        Map<Long, List<Unit>> unitsByThread = new HashMap<>();
+        List<Unit> units = new ArrayList<>();
+        for (HoldEvent hold : workload.holds) {
+            Unit unit = new Unit(hold.startMicros, hold.durationMicros, hold);
+            unitsByThread.computeIfAbsent(hold.thread, thread -> new ArrayList<>()).add(unit);
+            units.add(unit);
+        }
+        for (WorkloadEvent statement : workload.statements) {
+            Unit unit = findHold(unitsByThread.get(statement.thread), statement);
+            if (unit == null) {
+                unit = new Unit(statement.startMicros, 0, null);
+                units.add(unit);
+            }
+            unit.statements.add(statement);
+        }
+        units.sort(Comparator.comparingLong(unit -> unit.startMicros));
+        return units;
+    }
+
+    /**
+     * @param holds of a single thread, ordered by start
+     * @return the hold that started last before the statement and contains it, or null
+     */
+    private static Unit findHold(List<Unit> holds, WorkloadEvent statement) {
+        if (holds == null) {
+            return null;
+        }
+        int low = 0;
+        int high = holds.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (holds.get(middle).startMicros <= statement.startMicros) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        //A thread usually holds one connection at a time, only nested holds need to look further back
+        for (int i = high; i >= 0 && i > high - 16; i--) {
+            if (holds.get(i).hold.contains(statement)) {
+                return holds.get(i);
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            printUsage();
+            return;
+        }
+        File workloadFile = new File(args[0]);
+        String jdbcUrl = DEFAULT_JDBC_URL;
+        String user = "";
+        String password = "";
+        File schemaFile = null;
+        int concurrency = 8;
+        double speedUp = 1;
+        int maxPoolSize = -1;
+        for (int i = 1; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--jdbc-url":
+                    jdbcUrl = value;
+                    break;
+                case "--user":
+                    user = value;
+                    break;
+                case "--password":
+                    password = value;
+                    break;
+                case "--schema":
+                    schemaFile = new File(value);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(value);
+                    break;
+                case "--speed-up":
+                    speedUp = Double.parseDouble(value);
+                    break;
+                case "--max-pool-size":
+                    maxPoolSize = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+            }
+        }
+        if (maxPoolSize <= 0) {
+            maxPoolSize = concurrency;
+        }
+        Workload workload = WorkloadReader.read(workloadFile);
+        System.out.println("Read " + workload.statements.size() + " statements, " + workload.checkouts.size() + " connection checkouts and " + workload.holds.size() + " connection holds spanning " + workload.getDurationMicros() / MICROS_PER_MS + "ms from " + workloadFile);
+        Map<String, String> config = new HashMap<>();
+        config.put("jdbc.url", jdbcUrl);
+        config.put("database.user", user);
+        config.put("database.password", password);
+        config.put("database.maxPoolSize", Integer.toString(maxPoolSize));
+        //Open all connections up front, so connecting is not part of the measured pool wait
+        config.put("database.minPoolSize", Integer.toString(maxPoolSize));
+        config.put("database.initialPoolSize", Integer.toString(maxPoolSize));
+        config.put("database.warmUpConnections", Integer.toString(maxPoolSize));
+        config.put("database.metricsEnabled", "true");
+        ApplicationContext context = new ApplicationContext(config);
+        try {
+            DatabaseService databaseService = context.getBean(DatabaseService.class);
+            if (schemaFile != null) {
+                createSchema(databaseService, schemaFile);
+            }
+            WorkloadReplay replay = new WorkloadReplay(databaseService, workload, concurrency, speedUp);
+            replay.run();
+            replay.printReport();
+        } finally {
+            context.terminate();
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: WorkloadReplay <workload file> [--jdbc-url " + DEFAULT_JDBC_URL + "] [--user user] [--password password] [--schema file]");
+        System.out.println("           [--concurrency 8] [--speed-up 1, 0 to replay as fast as possible] [--max-pool-size concurrency]");
+    }
+
+    private static void createSchema(DatabaseService databaseService, File schemaFile) throws Exception {
+        String schema = new String(Files.readAllBytes(schemaFile.toPath()), StandardCharsets.UTF_8);
+        for (String statement : schema.split(";")) {
+            if (!statement.trim().isEmpty()) {
+                databaseService.execute(statement.trim());
+            }
+        }
+    }
+
+    public void run() throws InterruptedException {
+        long replayStart = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(() -> runWorker(replayStart), "replay-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        replayNanos = System.nanoTime() - replayStart;
+    }
+
+    private void runWorker(long replayStart) {
+        int ind;
+        while ((ind = nextUnit.getAndIncrement()) < units.size()) {
+            Unit unit = units.get(ind);
+            long scheduled = replayStart + scale(unit.startMicros);
+            waitUntil(scheduled);
+            try {
+                databaseService.execute(connection -> {
+                    for (WorkloadEvent event : unit.statements) {
+                        if (event.sql == null) {
+                            //Operations that consisted of several different statements, these were recorded separately as well
+                            numOfSkipped.incrementAndGet();
+                            continue;
+                        }
+                        long statementScheduled = scheduled + scale(event.startMicros - unit.startMicros);
+                        long start = waitUntil(statementScheduled);
+                        boolean success = execute(connection, event);
+                        long end = System.nanoTime();
+                        OperationResults operationResults = results.get(getKey(event));
+                        if (success) {
+                            operationResults.latency.add(end - start);
+                            operationResults.responseTime.add(end - statementScheduled);
+                        } else {
+                            operationResults.numOfErrors.incrementAndGet();
+                        }
+                    }
+                    //Keep the connection as long as in the recording
+                    waitUntil(scheduled + scale(unit.durationMicros));
+                });
+            } catch (RuntimeException e) {
+                //Could not take a connection or commit
+                numOfFailedConnections.incrementAndGet();
+                reportFirstError("Connection of " + unit.statements.size() + " statements", e);
+            }
+        }
+    }
+
+    private long scale(long micros) {
+        return speedUp > 0 ? (long) (TimeUnit.MICROSECONDS.toNanos(micros) / speedUp) : 0;
+    }
+
+    /**
+     * @return the current time, at or after the given time
+     */
+    private static long waitUntil(long time) {
+        long now;
+        while ((now = System.nanoTime()) < time) {
+            LockSupport.parkNanos(time - now);
+        }
+        return now;
+    }
+
+    private boolean execute(Connection connection, WorkloadEvent event) {
+        try (PreparedStatement statement = connection.prepareStatement(event.sql)) {
+            if (event.numOfParameterSets > 1) {
+                for (int i = 0; i < event.numOfParameterSets; i++) {
+                    bindParameters(statement, event);
+                    statement.addBatch();
+                    if ((i + 1) % MAX_BATCH_SIZE == 0) {
+                        statement.executeBatch();
+                    }
+                }
+                statement.executeBatch();
+            } else {
+                bindParameters(statement, event);
+                if (statement.execute()) {
+                    try (ResultSet resultSet = statement.getResultSet()) {
+                        while (resultSet.next()) {
+                            //Read all rows, like the original query did
+                        }
+                    }
+                }
+            }
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            reportFirstError(event.toString(), e);
+            return false;
+        }
+    }
+
+    private void reportFirstError(String description, Exception e) {
+        if (firstError.compareAndSet(null, e)) {
+            System.out.println("First error, further errors are only counted: " + description + " failed with " + e.getMessage());
+            e.printStackTrace(System.out);
+        }
+    }
+
+    private void bindParameters(PreparedStatement statement, WorkloadEvent event) throws SQLException {
+        for (int i = 0; i < event.parameterTypes.length; i++) {
+            int length = event.parameterLengths[i] > 0 ? event.parameterLengths[i] : DEFAULT_STRING_LENGTH;
+            bindParameter(statement, i + 1, event.parameterTypes[i], length);
+        }
+    }
+
+    private void bindParameter(PreparedStatement statement, int ind, int type, int length) throws SQLException {
+        switch (type) {
+            case Types.NULL:
+                statement.setNull(ind, Types.VARCHAR);
+                break;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+                statement.setInt(ind, (int) (nextValue.incrementAndGet() % Byte.MAX_VALUE));
+                break;
+            case Types.INTEGER:
+                statement.setInt(ind, (int) nextValue.incrementAndGet());
+                break;
+            case Types.BIGINT:
+                statement.setLong(ind, nextValue.incrementAndGet());
+                break;
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                statement.setDouble(ind, nextValue.incrementAndGet());
+                break;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                statement.setBoolean(ind, nextValue.incrementAndGet() % 2 == 0);
+                break;
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                statement.setTimestamp(ind, new Timestamp(System.currentTimeMillis()));
+                break;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                statement.setBytes(ind, new byte[length]);
+                break;
+            default:
+                statement.setString(ind, createString(length));
+        }
+    }
+
+    private String createString(int length) {
+        StringBuilder value = new StringBuilder(length);
+        value.append(nextValue.incrementAndGet());
+        while (value.length() < length) {
+            value.append('x');
+        }
+        value.setLength(length);
+        return value.toString();
+    }
+
+    public void printReport() {
+        long numOfStatements = 0;
+        long numOfErrors = 0;
+        LatencySamples latency = new LatencySamples();
+        LatencySamples recorded = new LatencySamples();
+        for (OperationResults operationResults : results.values()) {
+            numOfErrors += operationResults.numOfErrors.get();
+            for (long value : operationResults.latency.getSorted()) {
+                latency.add(value);
+                numOfStatements++;
+            }
+            for (long value : operationResults.recorded.getSorted()) {
+                recorded.add(value);
+            }
+        }
+        double seconds = replayNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        System.out.println();
+        System.out.println(String.format("Replayed %d statements in %.3fs, %.1f statements/s, %d errors, %d skipped, %d failed connections", numOfStatements, seconds, numOfStatements / seconds, numOfErrors, numOfSkipped.get(), numOfFailedConnections.get()));
+        System.out.println("Latencies in ms");
+        for (Map.Entry<String, OperationResults> entry : results.entrySet()) {
+            OperationResults operationResults = entry.getValue();
+            System.out.println(entry.getKey() + ": " + operationResults.latency.getCount() + " statements, " + operationResults.numOfErrors.get() + " errors");
+            printLatencies(operationResults.latency, operationResults.responseTime, operationResults.recorded);
+        }
+        System.out.println("all operations:");
+        printLatencies(latency, null, recorded);
+        Histogram checkoutWait = databaseService.getMetrics().getCheckoutWait();
+        LatencySamples recordedCheckoutWait = new LatencySamples();
+        for (CheckoutEvent checkout : workload.checkouts) {
+            recordedCheckoutWait.add(checkout.durationMicros);
+        }
+        System.out.println("pool wait:");
+        //The histogram of the pool has buckets of powers of two, so these percentiles are upper bounds
+        System.out.println(String.format("  replayed  %d checkouts p50<=%.3f p99<=%.3f max=%.3f", checkoutWait.getCount(), checkoutWait.getPercentile(50) / (double) NANOS_PER_MS, checkoutWait.getPercentile(99) / (double) NANOS_PER_MS, checkoutWait.getMax() / (double) NANOS_PER_MS));
+        System.out.println("  recorded  " + recordedCheckoutWait.getCount() + " checkouts " + recordedCheckoutWait.summarize(MICROS_PER_MS));
+        Histogram connectionHold = databaseService.getMetrics().getConnectionHold();
+        LatencySamples recordedHold = new LatencySamples();
+        for (HoldEvent hold : workload.holds) {
+            recordedHold.add(hold.durationMicros);
+        }
+        System.out.println("connection hold:");
+        System.out.println(String.format("  replayed  %d holds p50<=%.3f p99<=%.3f max=%.3f", connectionHold.getCount(), connectionHold.getPercentile(50) / (double) NANOS_PER_MS, connectionHold.getPercentile(99) / (double) NANOS_PER_MS, connectionHold.getMax() / (double) NANOS_PER_MS));
+        System.out.println("  recorded  " + recordedHold.getCount() + " holds " + recordedHold.summarize(MICROS_PER_MS));
+        if (workload.holds.isEmpty()) {
+            System.out.println("The recording contains no connection holds, every statement was replayed on a connection of its own");
+        }
+    }
+
+    private void printLatencies(LatencySamples latency, LatencySamples responseTime, LatencySamples recorded) {
+        System.out.println("  latency   " + latency.summarize(NANOS_PER_MS));
+        if (responseTime != null && speedUp > 0) {
+            System.out.println("  response  " + responseTime.summarize(NANOS_PER_MS));
+        }
+        System.out.println("  recorded  " + recorded.summarize(MICROS_PER_MS));
+    }
+
+    private static String getKey(WorkloadEvent event) {
+        return event.entity + "/" + event.operation;
+    }
+
+    /**
+     * Statements that are replayed on a single connection
+     */
+    private static class Unit {
+        private final long startMicros;
+        private final long durationMicros;
+        /**
+         * The recorded hold, or null for a statement that was not executed within a hold
+         */
+        private final HoldEvent hold;
+        private final List<WorkloadEvent> statements = new ArrayList<>();
+
+        private Unit(long startMicros, long durationMicros, HoldEvent hold) {
+            this.startMicros = startMicros;
+            this.durationMicros = durationMicros;
+            this.hold = hold;
+        }
+    }
+
+    private static class OperationResults {
+        /**
+         * In nanoseconds
+         */
+        private final LatencySamples latency = new LatencySamples();
+        /**
+         * In nanoseconds, including the delay before the statement started
+         */
+        private final LatencySamples responseTime = new LatencySamples();
+        /**
+         * In microseconds, the latency of the recorded statements
+         */
+        private final LatencySamples recorded = new LatencySamples();
+        private final AtomicLong numOfErrors = new AtomicLong();
+    }
+}
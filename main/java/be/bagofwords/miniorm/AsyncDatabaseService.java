@@ -0,0 +1,165 @@
+package be.bagofwords.miniorm;
+
+import be.bagofwords.logging.Log;
+import be.bagofwords.minidepi.ApplicationContext;
+import be.bagofwords.minidepi.LifeCycleBean;
+import be.bagofwords.minidepi.annotations.Inject;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous variants of the methods of {@link DatabaseService}. Every call is executed on a separate thread and
+ * returns a {@link CompletableFuture}, so independent queries can run concurrently. Virtual threads are used when the JVM
+ * supports them, a fixed pool of platform threads otherwise.
+ * <p>
+ * The number of pending calls is limited to database.asyncMaxPending (by default twice the size of the connection pool).
+ * When that limit is reached, new calls block the calling thread until a previous call has finished.
+ */
+public class AsyncDatabaseService implements LifeCycleBean {
+
+    @Inject
+    private ApplicationContext context;
+    @Inject
+    private DatabaseService databaseService;
+
+    private ExecutorService executor;
+    private Semaphore pendingCalls;
+
+    @Override
+    public void startBean() {
+        String defaultProperties = "mini-orm.properties";
+        int maxPoolSize = databaseService.getMaxPoolSize();
+        int maxPending = Integer.parseInt(context.getProperty("database.asyncMaxPending", defaultProperties));
+        pendingCalls = new Semaphore(maxPending > 0 ? maxPending : 2 * maxPoolSize);
+        boolean useVirtualThreads = Boolean.parseBoolean(context.getProperty("database.asyncVirtualThreads", defaultProperties));
+        executor = useVirtualThreads ? createVirtualThreadExecutor() : null;
+        if (executor == null) {
+            int numOfThreads = Integer.parseInt(context.getProperty("database.asyncThreads", defaultProperties));
+            executor = createPlatformThreadExecutor(numOfThreads > 0 ? numOfThreads : maxPoolSize);
+        }
+    }
+
+    @Override
+    public void stopBean() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                Log.e("Asynchronous database calls did not finish in 30s");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public CompletableFuture<Void> executeAsync(DatabaseService.DatabaseAction action) {
+        return supplyAsync(() -> {
+            databaseService.execute(action);
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<T> executeAsync(DatabaseService.DatabaseActionWithResult<T> action) {
+        return supplyAsync(() -> databaseService.execute(action));
+    }
+
+    public <T> CompletableFuture<List<T>> queryAsync(String query, DatabaseService.ResultSetHandler<T> handler, Object... args) {
+        return supplyAsync(() -> databaseService.query(query, args).results(handler));
+    }
+
+    public <T> CompletableFuture<List<T>> readObjectsAsync(Class<T> _class) {
+        return supplyAsync(() -> databaseService.readObjects(_class));
+    }
+
+    public <T> CompletableFuture<List<T>> readObjectsAsync(Class<T> _class, String clause, Object... args) {
+        return supplyAsync(() -> databaseService.readObjects(_class, clause, args));
+    }
+
+    public <T> CompletableFuture<T> readObjectAsync(Class<T> _class, String clause, Object... args) {
+        return supplyAsync(() -> databaseService.readObject(_class, clause, args));
+    }
+
+    public CompletableFuture<Long> insertObjectAsync(Object object) {
+        return supplyAsync(() -> databaseService.insertObject(object));
+    }
+
+    public CompletableFuture<List<Long>> insertObjectsAsync(List<?> objects) {
+        return supplyAsync(() -> databaseService.insertObjects(objects));
+    }
+
+    public CompletableFuture<Void> insertOrUpdateObjectsAsync(List<?> objects) {
+        return supplyAsync(() -> {
+            databaseService.insertOrUpdateObjects(objects);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> updateObjectWithIdAsync(Object object) {
+        return supplyAsync(() -> {
+            databaseService.updateObjectWithId(object);
+            return null;
+        });
+    }
+
+    public CompletableFuture<int[]> updateObjectsWithIdAsync(List<?> objects) {
+        return supplyAsync(() -> databaseService.updateObjectsWithId(objects));
+    }
+
+    public CompletableFuture<Void> deleteObjectsAsync(Class _class, String clause, Object... args) {
+        return supplyAsync(() -> {
+            databaseService.deleteObjects(_class, clause, args);
+            return null;
+        });
+    }
+
+    /**
+     * Runs an arbitrary piece of database code on the executor of this service, with the same limit on pending calls
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            pendingCalls.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return result;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(supplier.get());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    pendingCalls.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingCalls.release();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            //Looked up reflectively so this library still runs on JVMs without virtual threads
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createPlatformThreadExecutor(int numOfThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(numOfThreads, runnable -> {
+            Thread thread = new Thread(runnable, "mini-orm-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package be.bagofwords.miniorm;
+
+import be.bagofwords.iterator.CloseableIterator;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over a {@link CloseableIterator} that splits off batches of objects. The thread that splits drains the
+ * underlying result set, the split off batches can be processed in parallel by other threads. The iterator is closed as
+ * soon as it is exhausted, or when {@link #close()} is called.
+ */
+class BatchSpliterator<T> implements Spliterator<T> {
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+
+    private final CloseableIterator<T> iterator;
+    private final int batchSize;
+    private boolean closed;
+
+    BatchSpliterator(CloseableIterator<T> iterator, int batchSize) {
+        this.iterator = iterator;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (!closed && iterator.hasNext()) {
+            action.accept(iterator.next());
+            return true;
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (closed) {
+            return null;
+        }
+        Object[] batch = new Object[batchSize];
+        int size = 0;
+        while (size < batchSize && iterator.hasNext()) {
+            batch[size++] = iterator.next();
+        }
+        if (size < batchSize) {
+            close();
+        }
+        if (size == 0) {
+            return null;
+        }
+        return Spliterators.spliterator(batch, 0, size, CHARACTERISTICS);
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    void close() {
+        if (!closed) {
+            closed = true;
+            iterator.close();
+        }
+    }
+}
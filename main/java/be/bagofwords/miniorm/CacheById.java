@@ -0,0 +1,28 @@
+package be.bagofwords.miniorm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches objects of this class by id. The cache is filled by {@link DatabaseService#readObject(Class, String, Object...)}
+ * and {@link DatabaseService#readObjects(Class, String, Object...)}, and lookups with the clause "where id=?" are
+ * answered from the cache. Entries are invalidated by the update, insertOrUpdate and delete methods of the
+ * {@link DatabaseService}, but not by statements that are executed directly, or by other applications that write to the
+ * same table.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface CacheById {
+
+    /**
+     * Maximum number of cached objects. The least recently used objects are evicted first.
+     */
+    int maxSize() default 10_000;
+
+    /**
+     * Time after which a cached object is read again from the database
+     */
+    long ttlSeconds() default 300;
+}
@@ -5,18 +5,36 @@ import be.bagofwords.logging.Log;
 import be.bagofwords.minidepi.ApplicationContext;
 import be.bagofwords.minidepi.LifeCycleBean;
 import be.bagofwords.minidepi.annotations.Inject;
+import be.bagofwords.miniorm.cache.CacheStats;
+import be.bagofwords.miniorm.cache.EntityCache;
+import be.bagofwords.miniorm.cache.QueryCache;
 import be.bagofwords.miniorm.data.DatabaseType;
-import be.bagofwords.miniorm.data.ReadField;
-import com.mchange.v2.c3p0.ComboPooledDataSource;
+import be.bagofwords.miniorm.columnar.ColumnBatch;
+import be.bagofwords.miniorm.data.InsertMode;
+import be.bagofwords.miniorm.data.IsolationLevel;
+import be.bagofwords.miniorm.jfr.JfrEvents;
+import be.bagofwords.miniorm.mapping.ColumnMapping;
+import be.bagofwords.miniorm.mapping.EntityMapping;
+import be.bagofwords.miniorm.metrics.DatabaseMetrics;
+import be.bagofwords.miniorm.pool.ConnectionProvider;
+import be.bagofwords.miniorm.pool.LeakDetector;
+import be.bagofwords.miniorm.pool.PoolSettings;
+import be.bagofwords.miniorm.pool.ReplicaRouter;
+import be.bagofwords.miniorm.tracking.ChangeTracker;
+import be.bagofwords.miniorm.workload.WorkloadRecorder;
 import org.apache.commons.lang3.StringUtils;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
+import java.io.File;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static be.bagofwords.util.Utils.noException;
 import static java.util.stream.Collectors.toList;
@@ -26,47 +44,225 @@ import static java.util.stream.Collectors.toList;
  */
 public class DatabaseService implements LifeCycleBean {
 
-    private static final int INSERT_BATCH_SIZE = 100;
+    private static final String ID_CLAUSE = "where id=?";
 
     @Inject
     private ApplicationContext context;
     @Inject
     private DatabaseTypeService databaseTypeService;
-
-    private ComboPooledDataSource pool;
-
-    private Map<Class, InitializationMethod> cachedInitializationMethods = new HashMap<>();
+    @Inject
+    private EntityMappingService entityMappingService;
+
+    private final ChangeTracker changeTracker = new ChangeTracker();
+    private final Map<Class, WriteBehindQueue> writeBehindQueues = new ConcurrentHashMap<>();
+    private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+    private QueryCache queryCache;
+    private DatabaseMetrics metrics;
+    private ConnectionProvider connectionProvider;
+    private LeakDetector leakDetector;
+    private ReplicaRouter replicaRouter;
+    private DatabaseType databaseType;
+    private InsertMode insertMode;
+    private int insertBatchSize;
+    private int updateBatchSize;
+    private int pageSize;
+    private int fetchSize;
+    private int streamBatchSize;
+    private int maxScanThreads;
+    private int writeBehindBatchSize;
+    private long writeBehindFlushIntervalMs;
+    private int writeBehindCapacity;
+    private int writeBehindMaxRetries;
+    private long writeBehindRetryBackoffMs;
+    private volatile boolean stopped;
+    private long maxStatementBytes;
+    private volatile boolean maxStatementBytesChecked;
 
     @Override
     public void startBean() {
-        pool = new ComboPooledDataSource();
         String defaultProperties = "mini-orm.properties";
         String jdbcUrl = context.getProperty("jdbc.url");
         if (StringUtils.isEmpty(jdbcUrl)) {
             throw new RuntimeException("Property jdbc.url was not specified");
         }
+        databaseType = DatabaseType.fromJdbUrl(jdbcUrl);
+        insertMode = InsertMode.valueOf(context.getProperty("database.insertMode", defaultProperties).toUpperCase());
+        insertBatchSize = Integer.parseInt(context.getProperty("database.insertBatchSize", defaultProperties));
+        updateBatchSize = Integer.parseInt(context.getProperty("database.updateBatchSize", defaultProperties));
+        pageSize = Integer.parseInt(context.getProperty("database.pageSize", defaultProperties));
+        fetchSize = Integer.parseInt(context.getProperty("database.fetchSize", defaultProperties));
+        streamBatchSize = Integer.parseInt(context.getProperty("database.streamBatchSize", defaultProperties));
+        maxScanThreads = Integer.parseInt(context.getProperty("database.maxScanThreads", defaultProperties));
+        writeBehindBatchSize = Integer.parseInt(context.getProperty("database.writeBehindBatchSize", defaultProperties));
+        writeBehindFlushIntervalMs = Long.parseLong(context.getProperty("database.writeBehindFlushIntervalMs", defaultProperties));
+        writeBehindCapacity = Integer.parseInt(context.getProperty("database.writeBehindCapacity", defaultProperties));
+        writeBehindMaxRetries = Integer.parseInt(context.getProperty("database.writeBehindMaxRetries", defaultProperties));
+        writeBehindRetryBackoffMs = Long.parseLong(context.getProperty("database.writeBehindRetryBackoffMs", defaultProperties));
+        metrics = new DatabaseMetrics(Boolean.parseBoolean(context.getProperty("database.metricsEnabled", defaultProperties)), Long.parseLong(context.getProperty("database.slowQueryMs", defaultProperties)));
+        queryCache = new QueryCache(Long.parseLong(context.getProperty("database.queryCacheMaxRows", defaultProperties)), Long.parseLong(context.getProperty("database.queryCacheMaxBytes", defaultProperties)));
+        maxStatementBytes = Long.parseLong(context.getProperty("database.maxStatementBytes", defaultProperties));
+        String workloadFile = context.getProperty("database.workloadFile", defaultProperties);
+        if (StringUtils.isNotBlank(workloadFile)) {
+            startRecording(new File(workloadFile.trim()));
+        }
+        int numOfGeneratedMappers = entityMappingService.loadGeneratedMappers();
+        if (numOfGeneratedMappers > 0) {
+            Log.i("Loaded " + numOfGeneratedMappers + " generated mappers");
+        }
         Log.i("Initiating database connection " + jdbcUrl);
-        pool.setJdbcUrl(jdbcUrl);
-        pool.setUser(context.getProperty("database.user", defaultProperties));
-        pool.setPassword(context.getProperty("database.password", defaultProperties));
-        pool.setMaxPoolSize(20);
-        pool.setMinPoolSize(0);
-        pool.setInitialPoolSize(5);
-        pool.setAutoCommitOnClose(true);
-        pool.setMaxIdleTime(20_000);
+        String connectionProviderClass = context.getProperty("database.connectionProvider", defaultProperties);
+        PoolSettings poolSettings = new PoolSettings(context, defaultProperties);
+        int warmUpConnections = Integer.parseInt(context.getProperty("database.warmUpConnections", defaultProperties));
+        connectionProvider = createConnectionProvider(connectionProviderClass);
+        connectionProvider.start(poolSettings);
+        long leakDetectionThresholdMs = Long.parseLong(context.getProperty("database.leakDetectionThresholdMs", defaultProperties));
+        leakDetector = leakDetectionThresholdMs > 0 ? new LeakDetector(leakDetectionThresholdMs) : null;
+        warmUp(connectionProvider, warmUpConnections);
+        String replicaUrls = context.getProperty("database.replicaUrls", defaultProperties);
+        if (StringUtils.isNotBlank(replicaUrls)) {
+            List<ConnectionProvider> replicas = new ArrayList<>();
+            for (String replicaUrl : replicaUrls.split(",")) {
+                Log.i("Initiating replica connection " + replicaUrl.trim());
+                ConnectionProvider replica = createConnectionProvider(connectionProviderClass);
+                replica.start(poolSettings.withJdbcUrl(replicaUrl.trim()));
+                warmUp(replica, warmUpConnections);
+                replicas.add(replica);
+            }
+            long readYourWritesMs = Long.parseLong(context.getProperty("database.readYourWritesMs", defaultProperties));
+            long replicaEjectionMs = Long.parseLong(context.getProperty("database.replicaEjectionMs", defaultProperties));
+            replicaRouter = new ReplicaRouter(replicas, readYourWritesMs, replicaEjectionMs);
+        }
+    }
+
+    private ConnectionProvider createConnectionProvider(String className) {
+        try {
+            return (ConnectionProvider) Class.forName(className).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new RuntimeException("Could not create connection provider " + className, e);
+        }
+    }
+
+    /**
+     * Opens the given number of connections at the same time, so the first requests do not have to wait for connections
+     * to be established
+     */
+    private void warmUp(ConnectionProvider provider, int numOfConnections) {
+        //Checking out more connections than the pool can hold would block forever
+        numOfConnections = Math.min(numOfConnections, provider.getMaxPoolSize());
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < numOfConnections; i++) {
+                connections.add(provider.getConnection());
+            }
+        } catch (SQLException e) {
+            Log.e("Failed to warm up the connection pool, opened " + connections.size() + " of " + numOfConnections + " connections", e);
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    Log.e("Failed to close database connection!", e);
+                }
+            }
+        }
     }
 
     @Override
     public void stopBean() {
-        pool.close();
+        stopped = true;
+        for (WriteBehindQueue queue : writeBehindQueues.values()) {
+            queue.close();
+        }
+        if (leakDetector != null) {
+            leakDetector.close();
+        }
+        if (replicaRouter != null) {
+            replicaRouter.close();
+        }
+        connectionProvider.close();
+        stopRecording();
+    }
+
+    /**
+     * Writes every statement from now on to the given file, with its operation, entity, SQL, the type and length of its
+     * parameters and its timing, together with the waits for connections and how long they were held. Values of
+     * parameters are not written. The file can be replayed with the WorkloadReplay tool of the benchmarks module. A
+     * recording that is already running is stopped first.
+     */
+    public void startRecording(File file) {
+        WorkloadRecorder previous = metrics.setRecorder(new WorkloadRecorder(file));
+        if (previous != null) {
+            previous.close();
+        }
+        Log.i("Recording workload to " + file);
+    }
+
+    /**
+     * Stops the recording started with {@link #startRecording(File)} or the property database.workloadFile, if any
+     */
+    public void stopRecording() {
+        WorkloadRecorder recorder = metrics.setRecorder(null);
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
+    public int getMaxPoolSize() {
+        return connectionProvider.getMaxPoolSize();
+    }
+
+    public ConnectionProvider getConnectionProvider() {
+        return connectionProvider;
+    }
+
+    public DatabaseMetrics getMetrics() {
+        return metrics;
     }
 
     private Connection getConnection() throws SQLException {
-        Connection connection = pool.getConnection();
+        return getConnection(connectionProvider);
+    }
+
+    private Connection getConnection(ConnectionProvider provider) throws SQLException {
+        boolean timed = metrics.isEnabled() || JfrEvents.isRecording();
+        long start = timed ? System.nanoTime() : 0;
+        Connection connection;
+        try {
+            connection = provider.getConnection();
+        } catch (SQLTransientConnectionException | SQLNonTransientConnectionException e) {
+            throw e;
+        } catch (SQLException e) {
+            //Pools report checkout failures with generic exceptions, mark them as connection exceptions
+            throw new SQLTransientConnectionException("Could not check out a connection from the pool", "08001", e);
+        }
+        if (timed) {
+            metrics.recordCheckout(start);
+            JfrEvents.recordCheckout(System.nanoTime() - start);
+        }
+        if (leakDetector != null) {
+            leakDetector.acquired(connection);
+        }
         connection.setAutoCommit(false);
         return connection;
     }
 
+    private void closeConnection(Connection connection) throws SQLException {
+        if (leakDetector != null) {
+            leakDetector.released(connection);
+        }
+        connection.close();
+    }
+
+    /**
+     * Closes a connection that was kept open after its action returned, such as the connection of an iterator
+     *
+     * @param acquired the value of {@link DatabaseMetrics#start()} when the connection was checked out
+     */
+    private void closeConnection(Connection connection, long acquired) throws SQLException {
+        metrics.recordHold(acquired);
+        closeConnection(connection);
+    }
+
     public String getType(Object object) {
         return getType(object.getClass());
     }
@@ -86,18 +282,56 @@ public class DatabaseService implements LifeCycleBean {
         return types;
     }
 
+    /**
+     * Executes a single statement. Since the statement could write to any table, all cached query results are invalidated.
+     */
     public void execute(String sqlStatement) {
         execute(connection -> {
-            connection.prepareStatement(sqlStatement).execute();
+            try (PreparedStatement statement = connection.prepareStatement(sqlStatement)) {
+                statement.execute();
+            }
         });
+        markAllTablesWritten();
+    }
+
+    /**
+     * Executes an action that writes to the given tables, and invalidates the cached query results of these tables
+     */
+    public void execute(Collection<String> writtenTables, DatabaseAction action) {
+        try {
+            execute(action);
+        } finally {
+            writtenTables.forEach(this::markTableWritten);
+        }
+    }
+
+    public <T> T execute(Collection<String> writtenTables, DatabaseActionWithResult<T> action) {
+        try {
+            return execute(action);
+        } finally {
+            writtenTables.forEach(this::markTableWritten);
+        }
     }
 
     public void execute(DatabaseAction action) {
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            transaction.execute(connection -> {
+                action.execute(connection);
+                return null;
+            });
+            return;
+        }
         Connection connection = null;
+        long acquired = 0;
+        Object event = JfrEvents.beginTransaction();
+        boolean committed = false;
         try {
             connection = getConnection();
+            acquired = metrics.start();
             action.execute(connection);
             connection.commit();
+            committed = true;
         } catch (Throwable t) {
             if (connection != null) {
                 try {
@@ -109,12 +343,14 @@ public class DatabaseService implements LifeCycleBean {
             throw new RuntimeException(t);
         } finally {
             if (connection != null) {
+                metrics.recordHold(acquired);
                 try {
-                    connection.close();
+                    closeConnection(connection);
                 } catch (SQLException e) {
                     Log.e("Failed to close database connection!", e);
                 }
             }
+            JfrEvents.commitTransaction(event, committed);
         }
     }
 
@@ -122,14 +358,228 @@ public class DatabaseService implements LifeCycleBean {
         return execute(action, false);
     }
 
-    public <T> T execute(DatabaseActionWithResult<T> action, boolean keepOpen) {
+    public void transaction(TransactionAction action) {
+        transaction(IsolationLevel.DEFAULT, false, action);
+    }
+
+    public <T> T transaction(TransactionActionWithResult<T> action) {
+        return transaction(IsolationLevel.DEFAULT, false, action);
+    }
+
+    public void transaction(IsolationLevel isolation, boolean readOnly, TransactionAction action) {
+        transaction(isolation, readOnly, transaction -> {
+            action.execute(transaction);
+            return null;
+        });
+    }
+
+    /**
+     * Runs the action in a single transaction on a single connection of the primary. All methods of this service that are
+     * called by the action on the same thread join the transaction, which is committed when the action returns and rolled
+     * back when it throws an exception. If this thread is already in a transaction, the action joins that transaction,
+     * and the isolation level and read only hint are ignored.
+     *
+     * @param readOnly hints the driver that the transaction does not write, some databases optimize for this
+     */
+    public <T> T transaction(IsolationLevel isolation, boolean readOnly, TransactionActionWithResult<T> action) {
+        Transaction current = currentTransaction.get();
+        if (current != null) {
+            return joinTransaction(current, action);
+        }
         Connection connection = null;
+        long acquired = 0;
+        Object event = JfrEvents.beginTransaction();
+        boolean committed = false;
+        Transaction transaction = null;
+        int previousIsolation = -1;
         try {
             connection = getConnection();
+            acquired = metrics.start();
+            if (isolation != IsolationLevel.DEFAULT) {
+                previousIsolation = connection.getTransactionIsolation();
+                connection.setTransactionIsolation(isolation.jdbcLevel);
+            }
+            if (readOnly) {
+                connection.setReadOnly(true);
+            }
+            transaction = new Transaction(connection);
+            T result = runInTransaction(transaction, action);
+            if (transaction.isFailed()) {
+                throw new IllegalStateException("Rolled back the transaction because one of its operations failed");
+            }
+            if (transaction.isRollbackOnly()) {
+                connection.rollback();
+            } else {
+                connection.commit();
+                committed = true;
+            }
+            return result;
+        } catch (Throwable t) {
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException e) {
+                    Log.e("Failed to rollback database connection!", e);
+                }
+            }
+            throw new RuntimeException(t);
+        } finally {
+            if (connection != null) {
+                try {
+                    if (previousIsolation != -1) {
+                        connection.setTransactionIsolation(previousIsolation);
+                    }
+                    if (readOnly) {
+                        connection.setReadOnly(false);
+                    }
+                } catch (SQLException e) {
+                    Log.e("Failed to reset database connection!", e);
+                }
+                metrics.recordHold(acquired);
+                try {
+                    closeConnection(connection);
+                } catch (SQLException e) {
+                    Log.e("Failed to close database connection!", e);
+                }
+            }
+            if (transaction != null) {
+                completeTransaction(transaction, committed);
+            }
+            JfrEvents.commitTransaction(event, committed);
+        }
+    }
+
+    public void joinTransaction(Transaction transaction, TransactionAction action) {
+        joinTransaction(transaction, t -> {
+            action.execute(t);
+            return null;
+        });
+    }
+
+    /**
+     * Runs the action in a transaction that was started on another thread. The transaction should not be used by the
+     * other thread in the meantime.
+     */
+    public <T> T joinTransaction(Transaction transaction, TransactionActionWithResult<T> action) {
+        if (transaction.isCompleted()) {
+            throw new IllegalStateException("Transaction has already ended");
+        }
+        try {
+            return runInTransaction(transaction, action);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private <T> T runInTransaction(Transaction transaction, TransactionActionWithResult<T> action) throws Exception {
+        Transaction previous = currentTransaction.get();
+        currentTransaction.set(transaction);
+        try {
+            return action.execute(transaction);
+        } finally {
+            if (previous == null) {
+                currentTransaction.remove();
+            } else {
+                currentTransaction.set(previous);
+            }
+        }
+    }
+
+    private void completeTransaction(Transaction transaction, boolean committed) {
+        transaction.complete();
+        if (!committed) {
+            //Snapshots taken in the transaction could hold values that were rolled back, the next update writes all columns
+            transaction.getSnapshottedObjects().forEach(changeTracker::forget);
+        }
+        //Invalidate the caches again, rows that were read while the transaction was running could be cached
+        if (transaction.isAllTablesWritten()) {
+            markAllTablesWritten();
+        }
+        transaction.getWrittenTables().forEach(this::markTableWritten);
+        transaction.getWrittenCaches().forEach(EntityCache::invalidateAll);
+    }
+
+    private boolean isInTransaction() {
+        return currentTransaction.get() != null;
+    }
+
+    private void snapshot(EntityMapping<?> mapping, Object object) {
+        changeTracker.snapshot(mapping, object);
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            transaction.objectSnapshotted(object);
+        }
+    }
+
+    public <T> T execute(DatabaseActionWithResult<T> action, boolean keepOpen) {
+        return execute(action, keepOpen, connectionProvider);
+    }
+
+    /**
+     * Executes a read on a replica if replicas are configured, and on the primary otherwise. If a replica turns out to be
+     * unreachable, it is ejected and the read is retried on the next replica, or on the primary if none is left.
+     *
+     * @param table the table that is read, or null if it is not known
+     */
+    private <T> T executeRead(String table, DatabaseActionWithResult<T> action, boolean keepOpen) {
+        return executeRead(table, action, keepOpen, () -> true);
+    }
+
+    /**
+     * @param retryable whether a failed attempt can be retried, false if the action already had side effects
+     */
+    private <T> T executeRead(String table, DatabaseActionWithResult<T> action, boolean keepOpen, BooleanSupplier retryable) {
+        int numOfReplicas = replicaRouter == null ? 0 : replicaRouter.getNumOfReplicas();
+        ConnectionProvider replica;
+        for (int attempt = 0; attempt < numOfReplicas && (replica = replicaRouter.selectReplica(table)) != null; attempt++) {
+            try {
+                return execute(action, keepOpen, replica);
+            } catch (RuntimeException e) {
+                if (!isConnectionFailure(e)) {
+                    throw e;
+                }
+                replicaRouter.eject(replica, e);
+                if (!retryable.getAsBoolean()) {
+                    throw e;
+                }
+            }
+        }
+        return execute(action, keepOpen, connectionProvider);
+    }
+
+    static boolean isConnectionFailure(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            //SQL state class 08 is used for connection exceptions
+            if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null && ((SQLException) cause).getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> T execute(DatabaseActionWithResult<T> action, boolean keepOpen, ConnectionProvider provider) {
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            //Joins the transaction of this thread, which is always on the primary
+            return transaction.execute(action);
+        }
+        Connection connection = null;
+        long acquired = 0;
+        Object event = JfrEvents.beginTransaction();
+        boolean committed = false;
+        try {
+            connection = getConnection(provider);
+            acquired = metrics.start();
             T result = action.execute(connection);
             if (!keepOpen) {
                 connection.commit();
             }
+            committed = true;
             return result;
         } catch (Throwable t) {
             if (connection != null) {
@@ -141,60 +591,147 @@ public class DatabaseService implements LifeCycleBean {
             }
             throw new RuntimeException(t);
         } finally {
-            if (connection != null && !keepOpen) {
+            //A connection that is kept open is closed by the caller, unless the action failed
+            if (connection != null && (!keepOpen || !committed)) {
+                metrics.recordHold(acquired);
                 try {
-                    connection.close();
+                    closeConnection(connection);
                 } catch (SQLException e) {
                     Log.e("Failed to close database connection!", e);
                 }
             }
+            JfrEvents.commitTransaction(event, committed);
         }
     }
 
     public void updateObjectWithId(Object object) {
+        EntityMapping<?> mapping = getMapping(object);
+        ColumnMapping idColumn = mapping.getIdColumn();
+        if (idColumn == null) {
+            throw new RuntimeException("Object " + object + " does not have an id field. To update this type of objects, you need specify a clause");
+        }
+        List<ColumnMapping> columns;
+        String query;
+        BitSet changedColumns = mapping.isTrackChanges() ? changeTracker.getChangedColumns(mapping, object) : null;
+        if (changedColumns == null) {
+            columns = mapping.getColumns(false);
+            query = mapping.getSql(SqlBuilder.UPDATE, ID_CLAUSE, clause -> SqlBuilder.update(mapping, databaseType, columns, clause));
+        } else if (changedColumns.isEmpty()) {
+            //Nothing changed since this object was read
+            return;
+        } else {
+            List<ColumnMapping> allColumns = mapping.getColumns(false);
+            columns = changedColumns.stream().mapToObj(allColumns::get).collect(toList());
+            query = mapping.getSql(SqlBuilder.UPDATE_CHANGED, changedColumns.toString(), shape -> SqlBuilder.update(mapping, databaseType, columns, ID_CLAUSE));
+        }
         execute(connection -> {
-            List<Field> fields = getFields(object.getClass(), false).collect(toList());
-            Field idField = getIdField(object.getClass());
-            String query = createUpdateQuery(object, fields);
-            query += "where id=?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            fields.add(idField);
-            writeFields(statement, object, fields);
-            statement.executeUpdate();
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                int ind = writeFields(statement, object, columns);
+                idColumn.codec.writeFrom(statement, ind, object, idColumn.accessor);
+                Object event = JfrEvents.begin(JfrEvents.Kind.UPDATE);
+                long start = metrics.start();
+                int numOfRows = statement.executeUpdate();
+                metrics.recordObjectStatement(mapping.getTable(), SqlBuilder.UPDATE, query, columns, idColumn, 1, start, numOfRows);
+                JfrEvents.commit(event, mapping, query, numOfRows);
+            }
         });
+        invalidateCachedObjects(mapping, Collections.singletonList(object));
+        if (mapping.isTrackChanges()) {
+            snapshot(mapping, object);
+        }
     }
 
-    private String createUpdateQuery(Object object, List<Field> fields) {
-        String table = getTable(object.getClass());
-        String query = "update " + table + " set ";
-        boolean firstField = true;
-        for (Field field : fields) {
-            if (!field.getName().equals("id")) {
-                if (firstField) {
-                    firstField = false;
-                } else {
-                    query += ", ";
+    /**
+     * Updates all objects by id with a single prepared statement, sent in batches of database.updateBatchSize objects.
+     *
+     * @return the update count of every object, in the same order as the objects. An update count of 0 means that no row
+     * with the id of that object exists. Some drivers only report {@link Statement#SUCCESS_NO_INFO} for batched statements.
+     */
+    public int[] updateObjectsWithId(List<?> objects) {
+        return updateObjectsWithId(objects, false);
+    }
+
+    /**
+     * @param commitPerBatch commit after every batch instead of once after all objects were updated. If an error occurs,
+     *                       only the updates of the current batch are rolled back. Not allowed in a transaction, since it
+     *                       would commit part of the transaction.
+     */
+    public int[] updateObjectsWithId(List<?> objects, boolean commitPerBatch) {
+        if (commitPerBatch && isInTransaction()) {
+            throw new IllegalStateException("Can not commit per batch in a transaction");
+        }
+        if (objects.isEmpty()) {
+            return new int[0];
+        }
+        EntityMapping<?> mapping = getMapping(checkSingleClass(objects));
+        if (mapping.getIdColumn() == null) {
+            throw new RuntimeException("Objects of " + mapping.getEntityClass() + " do not have an id field. To update this type of objects, you need specify a clause");
+        }
+        int[] updateCounts;
+        try {
+            updateCounts = execute(connection -> {
+                return updateObjectsWithId(connection, mapping, objects, commitPerBatch);
+            });
+        } finally {
+            //With commitPerBatch, the batches before a failing batch are committed
+            invalidateCachedObjects(mapping, objects);
+        }
+        if (mapping.isTrackChanges()) {
+            for (Object object : objects) {
+                snapshot(mapping, object);
+            }
+        }
+        return updateCounts;
+    }
+
+    private int[] updateObjectsWithId(Connection connection, EntityMapping<?> mapping, List<?> objects, boolean commitPerBatch) throws SQLException {
+        ColumnMapping idColumn = mapping.getIdColumn();
+        List<ColumnMapping> columns = mapping.getColumns(false);
+        String query = mapping.getSql(SqlBuilder.UPDATE, ID_CLAUSE, clause -> SqlBuilder.update(mapping, databaseType, columns, clause));
+        int[] updateCounts = new int[objects.size()];
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int start = 0; start < objects.size(); start += updateBatchSize) {
+                int end = Math.min(objects.size(), start + updateBatchSize);
+                for (int i = start; i < end; i++) {
+                    int ind = writeFields(statement, objects.get(i), columns);
+                    idColumn.codec.writeFrom(statement, ind, objects.get(i), idColumn.accessor);
+                    statement.addBatch();
+                }
+                Object event = JfrEvents.begin(JfrEvents.Kind.UPDATE);
+                long batchStart = metrics.start();
+                int[] batchCounts = statement.executeBatch();
+                metrics.recordObjectStatement(mapping.getTable(), SqlBuilder.UPDATE, query, columns, idColumn, batchCounts.length, batchStart, batchCounts.length);
+                JfrEvents.commit(event, mapping, query, batchCounts.length);
+                metrics.recordBatch(mapping.getTable(), SqlBuilder.UPDATE, batchCounts.length);
+                System.arraycopy(batchCounts, 0, updateCounts, start, batchCounts.length);
+                if (commitPerBatch) {
+                    connection.commit();
                 }
-                query += escape(field.getName()) + "=? ";
             }
         }
-        return query;
+        return updateCounts;
     }
 
     public void updateObject(Object object, String clause, Object... args) {
         execute(connection -> {
             updateObject(connection, object, clause, args);
         });
+        invalidateCache(getMapping(object));
     }
 
-    private void updateObject(Connection connection, Object object, String clause, Object[] args) throws SQLException, IllegalAccessException {
-        List<Field> fields = getFields(object.getClass(), false).collect(toList());
-        String query = createUpdateQuery(object, fields);
-        query += clause;
-        PreparedStatement statement = connection.prepareStatement(query);
-        int ind = writeFields(statement, object, fields);
-        writeFields(statement, ind, args);
-        statement.executeUpdate();
+    private void updateObject(Connection connection, Object object, String clause, Object[] args) throws SQLException {
+        EntityMapping<?> mapping = getMapping(object);
+        List<ColumnMapping> columns = mapping.getColumns(false);
+        String query = mapping.getSql(SqlBuilder.UPDATE, clause, c -> SqlBuilder.update(mapping, databaseType, columns, c));
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            int ind = writeFields(statement, object, columns);
+            writeFields(statement, ind, args);
+            Object event = JfrEvents.begin(JfrEvents.Kind.UPDATE);
+            long start = metrics.start();
+            int numOfRows = statement.executeUpdate();
+            metrics.recordStatement(mapping.getTable(), SqlBuilder.UPDATE, query, args, start, numOfRows);
+            JfrEvents.commit(event, mapping, query, numOfRows);
+        }
     }
 
     public Long insertObject(Object object) {
@@ -207,21 +744,21 @@ public class DatabaseService implements LifeCycleBean {
     }
 
     public void insertOrUpdateObject(Object object) {
-        Field idField = getIdField(object.getClass());
-        if (idField == null) {
+        ColumnMapping idColumn = getMapping(object).getIdColumn();
+        if (idColumn == null) {
             throw new RuntimeException("Object " + object + " does not have an id field. To insertOrUpdate this type of objects, you need specify a clause");
         }
-        try {
-            long value = idField.getLong(object);
-            insertOrUpdateObject(object, "WHERE id=?", value);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException("Failed to get value of the id field in " + object);
+        Object value = idColumn.accessor.get(object);
+        if (value == null) {
+            throw new RuntimeException("The id field of " + object + " is null");
         }
+        insertOrUpdateObject(object, "WHERE id=?", value);
     }
 
     public void insertOrUpdateObject(Object object, String clause, Object... args) {
         execute(connection -> {
-            List<?> objects = readObjects(object.getClass(), clause, args);
+            //Read on the same connection instead of a second one, and never on a replica
+            List<?> objects = readObjects(connection, object.getClass(), clause, args);
             if (objects.isEmpty()) {
                 //insert
                 insertObjects(connection, Collections.singletonList(object));
@@ -233,100 +770,234 @@ public class DatabaseService implements LifeCycleBean {
                 throw new RuntimeException("The clause \"" + clause + "\" resulted in " + objects.size() + " returned objects. Expected zero or one objects");
             }
         });
+        invalidateCache(getMapping(object));
+    }
+
+    /**
+     * Inserts the objects, or updates the rows that already exist with the same id, with the native upsert statement of
+     * the database (insert ... on duplicate key update for MySQL, merge for H2, SQL Server and Oracle). All objects need
+     * to be of the same class and need to have their id set. On SQL Server the merge inserts the ids explicitly, so the id
+     * column must not be an identity column.
+     */
+    public void insertOrUpdateObjects(List<?> objects) {
+        if (objects.isEmpty()) {
+            return;
+        }
+        execute(connection -> {
+            insertOrUpdateObjects(connection, objects);
+        });
+        invalidateCachedObjects(getMapping(objects.get(0)), objects);
+    }
+
+    private void insertOrUpdateObjects(Connection connection, List<?> objects) throws SQLException {
+        EntityMapping<?> mapping = getMapping(checkSingleClass(objects));
+        ColumnMapping idColumn = mapping.getIdColumn();
+        if (idColumn == null) {
+            throw new RuntimeException("Objects of " + mapping.getEntityClass() + " do not have an id field. To insertOrUpdate this type of objects, you need specify a clause");
+        }
+        for (Object object : objects) {
+            if (idColumn.accessor.get(object) == null) {
+                throw new RuntimeException("The id field of " + object + " is null");
+            }
+        }
+        List<ColumnMapping> columns = mapping.getColumns();
+        Object event = JfrEvents.begin(JfrEvents.Kind.UPSERT);
+        long upsertStart = metrics.start();
+        //Statements of several rows are recorded as a batch of the statement for a single row
+        String singleRowQuery = null;
+        switch (databaseType) {
+            case MYSQL:
+            case H2:
+            case MSSQL:
+                singleRowQuery = mapping.getSql(SqlBuilder.UPSERT, "1", c -> SqlBuilder.upsert(mapping, databaseType, 1));
+                int maxRows = getMaxRowsPerStatement(columns);
+                long maxBytes = getMaxStatementBytes(connection);
+                int start = 0;
+                while (start < objects.size()) {
+                    int end = getEndOfStatement(objects, start, columns, maxRows, maxBytes);
+                    int numOfRows = end - start;
+                    String query = mapping.getSql(SqlBuilder.UPSERT, Integer.toString(numOfRows), c -> SqlBuilder.upsert(mapping, databaseType, numOfRows));
+                    try (PreparedStatement statement = connection.prepareStatement(query)) {
+                        int ind = 1;
+                        for (int i = start; i < end; i++) {
+                            ind = writeFields(statement, ind, objects.get(i), columns);
+                        }
+                        statement.executeUpdate();
+                    }
+                    start = end;
+                }
+                break;
+            case ORACLE:
+                String query = mapping.getSql(SqlBuilder.UPSERT, "1", c -> SqlBuilder.upsert(mapping, databaseType, 1));
+                singleRowQuery = query;
+                try (PreparedStatement statement = connection.prepareStatement(query)) {
+                    for (int i = 0; i < objects.size(); i++) {
+                        writeFields(statement, objects.get(i), columns);
+                        statement.addBatch();
+                        if ((i + 1) % insertBatchSize == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+                break;
+            default:
+                insertOrUpdateWithoutUpsert(connection, mapping, objects);
+        }
+        metrics.recordObjectStatement(mapping.getTable(), SqlBuilder.UPSERT, singleRowQuery, columns, null, objects.size(), upsertStart, objects.size());
+        JfrEvents.commit(event, mapping, singleRowQuery, objects.size());
+        metrics.recordBatch(mapping.getTable(), SqlBuilder.UPSERT, objects.size());
+    }
+
+    /**
+     * For databases without a (known) upsert statement: update all objects by id and insert the objects for which no row
+     * was updated.
+     */
+    private void insertOrUpdateWithoutUpsert(Connection connection, EntityMapping<?> mapping, List<?> objects) throws SQLException {
+        int[] updateCounts = updateObjectsWithId(connection, mapping, objects, false);
+        List<Object> missingObjects = new ArrayList<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == 0) {
+                missingObjects.add(objects.get(i));
+            }
+        }
+        if (!missingObjects.isEmpty()) {
+            String insertQuery = mapping.getSql(SqlBuilder.INSERT_WITH_ID, null, clause -> SqlBuilder.insert(mapping, databaseType, true));
+            insertWithoutAutoGeneratedIds(missingObjects, connection, insertQuery, mapping.getColumns());
+        }
+    }
+
+    /**
+     * Returns the write-behind queue of this class, creating it if needed. Objects offered to this queue are inserted in
+     * batches on a background thread. All queues are drained when this service is stopped, after which no new queues can
+     * be created.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> WriteBehindQueue<T> writeBehind(Class<T> _class) {
+        WriteBehindQueue<T> queue = writeBehindQueues.computeIfAbsent(_class, c -> {
+            checkNotStopped(_class);
+            return new WriteBehindQueue<>(this, _class, writeBehindBatchSize, writeBehindFlushIntervalMs, writeBehindCapacity, writeBehindMaxRetries, writeBehindRetryBackoffMs);
+        });
+        if (stopped) {
+            //The service could have been stopped while the queue was created, without seeing it
+            queue.close();
+            checkNotStopped(_class);
+        }
+        return queue;
+    }
+
+    private void checkNotStopped(Class<?> _class) {
+        if (stopped) {
+            throw new IllegalStateException("Can not create a write-behind queue for " + _class + ", the database service has been stopped");
+        }
     }
 
     public List<Long> insertObjects(List<? extends Object> objects) {
-        return execute(connection -> {
-            return insertObjects(connection, objects);
+        return insertObjects(objects, insertMode);
+    }
+
+    public List<Long> insertObjects(List<? extends Object> objects, InsertMode mode) {
+        List<Long> ids = execute(connection -> {
+            return insertObjects(connection, objects, mode);
         });
+        if (!objects.isEmpty()) {
+            markTableWritten(getMapping(objects.get(0)).getTable());
+        }
+        return ids;
     }
 
-    private List<Long> insertObjects(Connection connection, List<?> objects) throws SQLException, IllegalAccessException {
+    private List<Long> insertObjects(Connection connection, List<?> objects) throws SQLException {
+        return insertObjects(connection, objects, insertMode);
+    }
+
+    private List<Long> insertObjects(Connection connection, List<?> objects, InsertMode mode) throws SQLException {
         if (objects.isEmpty()) {
             return Collections.emptyList();
         }
-        Class objectClass = objects.get(0).getClass();
-        Field idField = getIdField(objectClass);
-        boolean generateId = idField != null;
-        for (Object object : objects) {
-            if (object.getClass() != objectClass) {
-                throw new RuntimeException("Found two types of objects " + objectClass + " and " + object.getClass());
+        EntityMapping<?> mapping = getMapping(checkSingleClass(objects));
+        ColumnMapping idColumn = mapping.getIdColumn();
+        boolean generateId = idColumn != null;
+        List<ColumnMapping> columns = mapping.getColumns(!generateId);
+        List<Long> ids;
+        Object event = JfrEvents.begin(JfrEvents.Kind.INSERT);
+        long start = metrics.start();
+        //Multi-row inserts are recorded as a batch of the statement for a single row
+        String query = mapping.getSql(generateId ? SqlBuilder.INSERT : SqlBuilder.INSERT_WITH_ID, null, clause -> SqlBuilder.insert(mapping, databaseType, !generateId));
+        String executedQuery = query;
+        if (mode == InsertMode.MULTI_ROW && databaseType.maxRowsPerInsert > 0) {
+            ids = generateId ? new ArrayList<>(objects.size()) : null;
+            executedQuery = insertMultiRow(objects, connection, mapping, generateId, ids);
+        } else {
+            if (generateId) {
+                ids = insertWithAutoGeneratedIds(objects, connection, query, columns);
+            } else {
+                insertWithoutAutoGeneratedIds(objects, connection, query, columns);
+                ids = null;
             }
         }
-        String table = getTable(objectClass);
-        String query = "insert into " + table;
-        List<String> fields = getFieldNames(objectClass, !generateId);
-        query += " (" + getFieldsString(table, fields, false) + ")";
-        query += " values (" + String.join(",", fields.stream().map(name -> "?").collect(toList())) + ")";
+        metrics.recordObjectStatement(mapping.getTable(), SqlBuilder.INSERT, query, columns, null, objects.size(), start, objects.size());
+        JfrEvents.commit(event, mapping, executedQuery, objects.size());
+        metrics.recordBatch(mapping.getTable(), SqlBuilder.INSERT, objects.size());
         if (generateId) {
-            List<Long> ids = insertWithAutoGeneratedIds(objects, connection, query);
             assert ids.size() == objects.size();
             for (int i = 0; i < ids.size(); i++) {
-                idField.set(objects.get(i), ids.get(i));
+                idColumn.accessor.set(objects.get(i), ids.get(i));
             }
-            return ids;
-        } else {
-            insertWithoutAutoGeneratedIds(objects, connection, query);
-            return null;
         }
+        return ids;
     }
 
-    private Field getIdField(Class objectClass) {
-        try {
-            Field idField = objectClass.getField("id");
-            if (!idField.getType().equals(Long.class) && !idField.getType().equals(long.class)) {
-                throw new RuntimeException("The id field of class " + objectClass + " is not of type Long or long");
+    private Class<?> checkSingleClass(List<?> objects) {
+        Class<?> objectClass = objects.get(0).getClass();
+        for (Object object : objects) {
+            if (object.getClass() != objectClass) {
+                throw new RuntimeException("Found two types of objects " + objectClass + " and " + object.getClass());
             }
-            return idField;
-        } catch (NoSuchFieldException exp) {
-            return null;
         }
+        return objectClass;
     }
 
-    private void insertWithoutAutoGeneratedIds(List<?> objects, Connection connection, String query) throws SQLException, IllegalAccessException {
-        PreparedStatement statement = connection.prepareStatement(query);
-        for (int i = 0; i < objects.size(); i++) {
-            writeFields(statement, objects.get(i), true);
-            statement.addBatch();
-            if ((i - 1) % INSERT_BATCH_SIZE == 0) {
-                statement.executeBatch();
+    private void insertWithoutAutoGeneratedIds(List<?> objects, Connection connection, String query, List<ColumnMapping> columns) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int i = 0; i < objects.size(); i++) {
+                writeFields(statement, objects.get(i), columns);
+                statement.addBatch();
+                if ((i + 1) % insertBatchSize == 0) {
+                    statement.executeBatch();
+                }
             }
+            statement.executeBatch();
         }
-        statement.executeBatch();
     }
 
-    private List<Long> insertWithAutoGeneratedIds(List<?> objects, Connection connection, String query) throws SQLException, IllegalAccessException {
-        PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-        int prevEnd = 0;
-        List<Long> allIds = new ArrayList<>();
-        for (int i = 0; i < objects.size(); i++) {
-            if (i % INSERT_BATCH_SIZE == 0 && i > 0) {
-                List<Long> ids = executeBatchAndReadIds(statement, objects, prevEnd, i);
-                allIds.addAll(ids);
-                prevEnd = i;
+    private List<Long> insertWithAutoGeneratedIds(List<?> objects, Connection connection, String query, List<ColumnMapping> columns) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            int prevEnd = 0;
+            List<Long> allIds = new ArrayList<>();
+            for (int i = 0; i < objects.size(); i++) {
+                if (i % insertBatchSize == 0 && i > 0) {
+                    List<Long> ids = executeBatchAndReadIds(statement, objects, prevEnd, i);
+                    allIds.addAll(ids);
+                    prevEnd = i;
+                }
+                writeFields(statement, objects.get(i), columns);
+                statement.addBatch();
             }
-            writeFields(statement, objects.get(i), false);
-            statement.addBatch();
+            List<Long> ids = executeBatchAndReadIds(statement, objects, prevEnd, objects.size());
+            allIds.addAll(ids);
+            return allIds;
         }
-        List<Long> ids = executeBatchAndReadIds(statement, objects, prevEnd, objects.size());
-        allIds.addAll(ids);
-        return allIds;
     }
 
     private List<Long> executeBatchAndReadIds(PreparedStatement statement, List<? extends Object> objects, int start, int end) throws SQLException {
         statement.executeBatch();
-        ResultSet generatedKeys = statement.getGeneratedKeys();
         int ind = start;
         List<Long> ids = new ArrayList<>();
-        while (generatedKeys.next()) {
-            long id = generatedKeys.getLong(1);
-            ids.add(id);
-            try {
-                databaseTypeService.writeField(objects.get(ind), id, "id");
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                throw new RuntimeException("Failed to set id of object " + objects.get(ind));
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+            while (generatedKeys.next()) {
+                ids.add(generatedKeys.getLong(1));
+                ind++;
             }
-            ind++;
         }
         if (ind != end) {
             throw new RuntimeException("Did not retrieve enough ids after inserting objects. Retrieved " + ind + ", needed " + end);
@@ -334,19 +1005,124 @@ public class DatabaseService implements LifeCycleBean {
         return ids;
     }
 
-    public void deleteObjects(Class _class, String clause, Object... args) {
-        String table = getTable(_class);
-        String query = "DELETE FROM " + escape(table);
-        if (clause != null) {
-            query += " " + clause;
+    /**
+     * @param ids receives the generated ids if generateId is set
+     * @return the first statement, the other statements only differ in their number of rows
+     */
+    private String insertMultiRow(List<?> objects, Connection connection, EntityMapping<?> mapping, boolean generateId, List<Long> ids) throws SQLException {
+        List<ColumnMapping> columns = mapping.getColumns(!generateId);
+        int maxRows = getMaxRowsPerStatement(columns);
+        long maxBytes = getMaxStatementBytes(connection);
+        String firstQuery = null;
+        int start = 0;
+        while (start < objects.size()) {
+            int end = getEndOfStatement(objects, start, columns, maxRows, maxBytes);
+            String query = insertRows(objects, start, end, connection, mapping, columns, generateId, ids);
+            if (firstQuery == null) {
+                firstQuery = query;
+            }
+            start = end;
+        }
+        return firstQuery;
+    }
+
+    private int getMaxRowsPerStatement(List<ColumnMapping> columns) {
+        return Math.min(insertBatchSize, Math.min(databaseType.maxRowsPerInsert, databaseType.maxParameters / Math.max(1, columns.size())));
+    }
+
+    /**
+     * @return the end (exclusive) of the rows, starting from start, that fit in a single multi-row statement
+     */
+    private int getEndOfStatement(List<?> objects, int start, List<ColumnMapping> columns, int maxRows, long maxBytes) {
+        int end = start;
+        long bytes = 0;
+        while (end < objects.size() && end - start < maxRows) {
+            long rowBytes = estimateRowBytes(objects.get(end), columns);
+            if (end > start && bytes + rowBytes > maxBytes) {
+                break;
+            }
+            bytes += rowBytes;
+            end++;
+        }
+        return end;
+    }
+
+    private String insertRows(List<?> objects, int start, int end, Connection connection, EntityMapping<?> mapping, List<ColumnMapping> columns, boolean generateId, List<Long> ids) throws SQLException {
+        int numOfRows = end - start;
+        String operation = generateId ? SqlBuilder.INSERT_MULTI_ROW : SqlBuilder.INSERT_MULTI_ROW_WITH_ID;
+        String query = mapping.getSql(operation, Integer.toString(numOfRows), c -> SqlBuilder.insertMultiRow(mapping, databaseType, !generateId, numOfRows));
+        try (PreparedStatement statement = generateId ? connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(query)) {
+            int ind = 1;
+            for (int i = start; i < end; i++) {
+                ind = writeFields(statement, ind, objects.get(i), columns);
+            }
+            statement.executeUpdate();
+            if (generateId) {
+                int numOfIds = 0;
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    while (generatedKeys.next()) {
+                        ids.add(generatedKeys.getLong(1));
+                        numOfIds++;
+                    }
+                }
+                if (numOfIds != numOfRows) {
+                    throw new RuntimeException("Did not retrieve enough ids after inserting objects. Retrieved " + numOfIds + ", needed " + numOfRows);
+                }
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Rough upper bound of the number of bytes a row adds to a multi-row insert statement, assuming 4 bytes per character
+     * and escaping of binary data.
+     */
+    private long estimateRowBytes(Object object, List<ColumnMapping> columns) {
+        long bytes = 3;
+        for (ColumnMapping column : columns) {
+            if (column.type == String.class) {
+                String value = (String) column.accessor.get(object);
+                bytes += value == null ? 5 : 4L * value.length() + 3;
+            } else if (column.type == byte[].class) {
+                byte[] value = (byte[]) column.accessor.get(object);
+                bytes += value == null ? 5 : 2L * value.length + 3;
+            } else {
+                bytes += 32;
+            }
+        }
+        return bytes;
+    }
+
+    private long getMaxStatementBytes(Connection connection) throws SQLException {
+        if (!maxStatementBytesChecked) {
+            if (databaseType == DatabaseType.MYSQL) {
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("select @@max_allowed_packet")) {
+                    if (resultSet.next()) {
+                        //Leave some room for the statement itself
+                        maxStatementBytes = Math.min(maxStatementBytes, resultSet.getLong(1) - 1024);
+                    }
+                }
+            }
+            maxStatementBytesChecked = true;
         }
-        String finalQuery = query;
+        return maxStatementBytes;
+    }
+
+    public void deleteObjects(Class _class, String clause, Object... args) {
+        EntityMapping<?> mapping = getMapping(_class);
+        String query = mapping.getSql(SqlBuilder.DELETE, clause, c -> SqlBuilder.delete(mapping, databaseType, c));
         execute(connection -> {
-            PreparedStatement statement = connection.prepareStatement(finalQuery);
-            writeFields(statement, args);
-            statement.execute();
-            statement.close();
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                writeFields(statement, args);
+                Object event = JfrEvents.begin(JfrEvents.Kind.DELETE);
+                long start = metrics.start();
+                int numOfRows = statement.executeUpdate();
+                metrics.recordStatement(mapping.getTable(), SqlBuilder.DELETE, query, args, start, numOfRows);
+                JfrEvents.commit(event, mapping, query, numOfRows);
+            }
         });
+        invalidateCache(mapping);
     }
 
     public void writeFields(PreparedStatement statement, Object... args) throws SQLException {
@@ -358,10 +1134,21 @@ public class DatabaseService implements LifeCycleBean {
     }
 
     public WrappedResultSet query(String query, Object... args) {
-        return execute(connection -> {
+        //A connection that belongs to a transaction is not closed together with the result set
+        boolean ownsConnection = !isInTransaction();
+        return executeRead(null, connection -> {
+            long acquired = metrics.start();
             PreparedStatement statement = connection.prepareStatement(query);
-            writeFields(statement, args);
-            return new WrappedResultSet(query, connection, statement.executeQuery());
+            try {
+                writeFields(statement, args);
+                long start = metrics.start();
+                ResultSet resultSet = statement.executeQuery();
+                metrics.recordStatement("query", SqlBuilder.SELECT, query, args, start, 0);
+                return new WrappedResultSet(query, ownsConnection ? connection : null, resultSet, this, acquired);
+            } catch (SQLException | RuntimeException e) {
+                statement.close();
+                throw e;
+            }
         }, true);
     }
 
@@ -369,40 +1156,234 @@ public class DatabaseService implements LifeCycleBean {
         deleteObjects(_class, null);
     }
 
-    private String getFieldsString(String table, List<String> fields, boolean addTable) {
-        String cleanedTable = escape(table);
-        return String.join(",", fields.stream()
-                .map(this::escape)
-                .map(f -> addTable ? cleanedTable + "." + f : f)
-                .collect(toList()));
-    }
-
     public <T> List<T> readObjects(Class<T> _class) {
         return readObjects(_class, null);
     }
 
     public <T> List<T> readObjects(Class<T> _class, String clause, Object... args) {
-        return execute(connection -> {
+        EntityMapping<T> mapping = getMapping(_class);
+        //A cache hit does not need a connection at all
+        T cachedObject = getCachedObject(mapping, clause, args);
+        if (cachedObject != null) {
+            List<T> result = new ArrayList<>(1);
+            result.add(cachedObject);
+            return result;
+        }
+        return executeRead(mapping.getTable(), connection -> {
             return readObjects(connection, _class, clause, args);
-        });
+        }, false);
+    }
+
+    public <T> List<T> readColumns(Class<T> _class, List<String> columns) {
+        return readColumns(_class, columns, null);
+    }
+
+    /**
+     * Reads only the given columns of the matching rows. The other fields of the objects keep the value set by their
+     * constructor. Objects of a class annotated with {@link TrackChanges} are not tracked, since the snapshot would be
+     * incomplete, and objects are never cached. To read into a smaller class instead, annotate that class with the
+     * {@link Table} of the larger class and read it with {@link #readObjects(Class, String, Object...)}.
+     *
+     * @param columns names of the columns to read, in the order of a constructor of the class if it has no constructor
+     *                without arguments
+     */
+    public <T> List<T> readColumns(Class<T> _class, List<String> columns, String clause, Object... args) {
+        EntityMapping<T> projection = entityMappingService.getProjection(_class, columns);
+        return executeRead(projection.getTable(), connection -> {
+            return readObjects(connection, projection, clause, args);
+        }, false);
     }
 
     private <T> List<T> readObjects(Connection connection, Class<T> _class, String clause, Object[] args) throws SQLException {
-        String query = buildQuery(_class, clause);
-        PreparedStatement statement = connection.prepareStatement(query);
-        writeFields(statement, args);
-        statement.execute();
-        List<Field> fields = getFields(_class, true).collect(toList());
-        ResultSet resultSet = statement.getResultSet();
-        List<T> result = new ArrayList<>();
-        while (resultSet.next()) {
-            noException(() -> result.add(createObject(resultSet, _class, fields)));
-        }
-        resultSet.close();
-        statement.close();
+        return readObjects(connection, getMapping(_class), clause, args);
+    }
+
+    private <T> List<T> readObjects(Connection connection, EntityMapping<T> mapping, String clause, Object[] args) throws SQLException {
+        EntityCache cache = mapping.getCache();
+        //Rows read in a transaction could be uncommitted writes of that transaction, they are never cached
+        boolean inTransaction = isInTransaction();
+        long cacheGeneration = cache == null ? 0 : cache.getGeneration();
+        String query = buildQuery(mapping, clause);
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            writeFields(statement, args);
+            List<T> result = new ArrayList<>();
+            Object event = JfrEvents.begin(JfrEvents.Kind.READ);
+            long start = metrics.start();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                long executed = metrics.start();
+                while (resultSet.next()) {
+                    T object = readObject(resultSet, mapping);
+                    if (cache != null && !inTransaction) {
+                        cacheObject(cache, mapping, object, cacheGeneration);
+                    }
+                    result.add(object);
+                }
+                metrics.recordRead(mapping.getTable(), SqlBuilder.SELECT, query, args, start, executed, result.size());
+                JfrEvents.commit(event, mapping, query, result.size());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Reads the object with this id. If the class is annotated with {@link CacheById}, the object is returned from the
+     * cache when possible.
+     */
+    public <T> T readObjectWithId(Class<T> _class, long id) {
+        return readObject(_class, ID_CLAUSE, id);
+    }
+
+    /**
+     * @return the statistics of the cache of this class, or null if the class is not annotated with {@link CacheById}
+     */
+    public CacheStats getCacheStats(Class<?> _class) {
+        EntityCache cache = getMapping(_class).getCache();
+        return cache == null ? null : cache.getStats();
+    }
+
+    /**
+     * @return the object from the cache of its class if the clause selects a single id that is cached, null otherwise.
+     * A transaction always reads from its connection, to see its own writes with the isolation level it asked for.
+     */
+    private <T> T getCachedObject(EntityMapping<T> mapping, String clause, Object[] args) {
+        EntityCache cache = mapping.getCache();
+        if (cache == null || isInTransaction() || !isIdClause(clause) || args.length != 1 || !(args[0] instanceof Number)) {
+            return null;
+        }
+        Object[] values = cache.get(((Number) args[0]).longValue());
+        return values == null ? null : createCachedObject(mapping, values);
+    }
+
+    private static boolean isIdClause(String clause) {
+        if (clause == null || clause.length() > 32) {
+            return false;
+        }
+        StringBuilder normalized = new StringBuilder();
+        for (int i = 0; i < clause.length(); i++) {
+            char c = clause.charAt(i);
+            if (!Character.isWhitespace(c) && c != '`' && c != '"' && c != '[' && c != ']') {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString().equals("whereid=?");
+    }
+
+    /**
+     * Reads the objects, or returns them from the query cache if the same query was executed before and no write to the
+     * table happened since. Writes through this service invalidate the cache, other writes to the table need to be
+     * declared with {@link #execute(Collection, DatabaseAction)}. Every call returns new objects.
+     */
+    public <T> List<T> readObjectsCached(Class<T> _class, String clause, Object... args) {
+        if (isInTransaction()) {
+            return readObjects(_class, clause, args);
+        }
+        EntityMapping<T> mapping = getMapping(_class);
+        String sql = buildQuery(mapping, clause);
+        List<Object[]> rows = queryCache.get(mapping.getTable(), sql, args);
+        if (rows == null) {
+            long version = queryCache.getVersion(mapping.getTable());
+            List<T> objects = readObjects(_class, clause, args);
+            rows = new ArrayList<>(objects.size());
+            for (T object : objects) {
+                rows.add(getCachedValues(mapping, object));
+            }
+            queryCache.put(mapping.getTable(), sql, args, rows, version);
+            return objects;
+        }
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object[] values : rows) {
+            result.add(createCachedObject(mapping, values));
+        }
         return result;
     }
 
+    public CacheStats getQueryCacheStats() {
+        return queryCache.getStats();
+    }
+
+    private <T> void cacheObject(EntityCache cache, EntityMapping<T> mapping, T object, long generation) {
+        Object id = mapping.getIdColumn().accessor.get(object);
+        if (id != null) {
+            cache.put((Long) id, getCachedValues(mapping, object), generation);
+        }
+    }
+
+    private Object[] getCachedValues(EntityMapping<?> mapping, Object object) {
+        List<ColumnMapping> columns = mapping.getColumns();
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ColumnMapping.copyValue(columns.get(i).accessor.get(object));
+        }
+        return values;
+    }
+
+    private <T> T createCachedObject(EntityMapping<T> mapping, Object[] cachedValues) {
+        Object[] values = new Object[cachedValues.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ColumnMapping.copyValue(cachedValues[i]);
+        }
+        T object;
+        try {
+            object = mapping.createObject(values);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to create object of " + mapping.getEntityClass() + " from cache", e);
+        }
+        if (mapping.isTrackChanges()) {
+            snapshot(mapping, object);
+        }
+        return object;
+    }
+
+    private void invalidateCachedObjects(EntityMapping<?> mapping, List<?> objects) {
+        markTableWritten(mapping.getTable());
+        EntityCache cache = mapping.getCache();
+        if (cache != null) {
+            if (isInTransaction()) {
+                currentTransaction.get().cacheWritten(cache);
+            }
+            ColumnMapping idColumn = mapping.getIdColumn();
+            for (Object object : objects) {
+                Object id = idColumn.accessor.get(object);
+                if (id != null) {
+                    cache.invalidate((Long) id);
+                }
+            }
+        }
+    }
+
+    private void markTableWritten(String table) {
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            transaction.tableWritten(table);
+        }
+        queryCache.invalidate(table);
+        if (replicaRouter != null) {
+            replicaRouter.markWritten(table);
+        }
+    }
+
+    private void markAllTablesWritten() {
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            transaction.allTablesWritten();
+        }
+        queryCache.invalidateAll();
+        if (replicaRouter != null) {
+            replicaRouter.markAllWritten();
+        }
+    }
+
+    private void invalidateCache(EntityMapping<?> mapping) {
+        markTableWritten(mapping.getTable());
+        EntityCache cache = mapping.getCache();
+        if (cache != null) {
+            if (isInTransaction()) {
+                currentTransaction.get().cacheWritten(cache);
+            }
+            cache.invalidateAll();
+        }
+    }
+
     public <T> T readObject(Class<T> _class) {
         return singleObject(readObjects(_class));
     }
@@ -426,21 +1407,37 @@ public class DatabaseService implements LifeCycleBean {
     }
 
     public <T> CloseableIterator<T> readObjectsIt(Class<T> _class, String clause, Object... args) {
-        String finalQuery = buildQuery(_class, clause);
-        return execute(connection -> {
+        EntityMapping<T> mapping = getMapping(_class);
+        String finalQuery = buildQuery(mapping, clause);
+        boolean ownsConnection = !isInTransaction();
+        return executeRead(mapping.getTable(), connection -> {
+            long acquired = metrics.start();
             PreparedStatement statement = connection.prepareStatement(finalQuery, java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY);
-            statement.setFetchSize(Integer.MIN_VALUE);
-            writeFields(statement, args);
-            statement.execute();
-            ResultSet resultSet = statement.getResultSet();
-            List<Field> fields = getFields(_class, true).collect(toList());
+            ResultSet resultSet;
+            try {
+                setStreamingFetchSize(statement);
+                writeFields(statement, args);
+                long start = metrics.start();
+                resultSet = statement.executeQuery();
+                metrics.recordStatement(mapping.getTable(), SqlBuilder.SELECT, finalQuery, args, start, 0);
+            } catch (SQLException | RuntimeException e) {
+                statement.close();
+                throw e;
+            }
             return new CloseableIterator<T>() {
+                //Rows are reported to flight recorder in batches of fetchSize rows
+                private Object batchEvent;
+                private int rowsInBatch;
+
                 @Override
                 protected void closeInt() {
+                    commitBatchEvent();
                     noException(() -> {
                         resultSet.close();
                         statement.close();
-                        connection.close();
+                        if (ownsConnection) {
+                            closeConnection(connection, acquired);
+                        }
                     });
                 }
 
@@ -451,95 +1448,207 @@ public class DatabaseService implements LifeCycleBean {
 
                 @Override
                 public T next() {
-                    return noException(() -> createObject(resultSet, _class, fields));
+                    if (rowsInBatch == 0) {
+                        batchEvent = JfrEvents.begin(JfrEvents.Kind.ITERATE);
+                    }
+                    T object = noException(() -> readObject(resultSet, mapping));
+                    if (++rowsInBatch == fetchSize) {
+                        commitBatchEvent();
+                    }
+                    return object;
+                }
+
+                private void commitBatchEvent() {
+                    JfrEvents.commit(batchEvent, mapping, finalQuery, rowsInBatch);
+                    batchEvent = null;
+                    rowsInBatch = 0;
                 }
             };
         }, true);
     }
 
-    private <T> T createObject(ResultSet resultSet, Class aClass, List<Field> fields) throws InvocationTargetException, NoSuchMethodException, InstantiationException, SQLException, IllegalAccessException {
-        List<ReadField> fieldValues = databaseTypeService.readObjectFields(resultSet, fields);
-        Class[] fieldTypes = new Class[fieldValues.size()];
-        Object[] values = new Object[fieldValues.size()];
-        for (int i = 0; i < fieldValues.size(); i++) {
-            fieldTypes[i] = fieldValues.get(i).type;
-            values[i] = fieldValues.get(i).value;
+    private void setStreamingFetchSize(PreparedStatement statement) throws SQLException {
+        if (databaseType == DatabaseType.MYSQL) {
+            //Only way to make the MySQL driver stream results instead of reading all rows in memory
+            statement.setFetchSize(Integer.MIN_VALUE);
+        } else {
+            statement.setFetchSize(fetchSize);
         }
-        InitializationMethod<T> initializationMethod = getInitializationMethod(aClass, fields, fieldTypes);
-        return initializationMethod.createObject(values);
     }
 
-    private <T> InitializationMethod<T> getInitializationMethod(Class aClass, List<Field> fields, Class[] fieldTypes) {
-        return cachedInitializationMethods.computeIfAbsent(aClass, c -> determineInitializationMethod(c, fields, fieldTypes));
+    /**
+     * Reads the given columns of all matching rows into a single {@link ColumnBatch}.
+     */
+    public ColumnBatch readColumnBatch(Class<?> _class, List<String> columns, String clause, Object... args) {
+        return readIntoColumnBatches(_class, columns, 0, null, clause, args);
     }
 
-    private <T> InitializationMethod<T> determineInitializationMethod(Class<T> aClass, List<Field> fields, Class[] fieldTypes) {
-        try {
-            //Do we have single constructor for all fields?
-            Constructor constructor = aClass.getConstructor(fieldTypes);
-            return new AllArgsConstructor<>(constructor);
-        } catch (NoSuchMethodException exp) {
-            //OK
+    /**
+     * Reads the given columns of the matching rows in batches of at most batchSize rows, which are passed to the handler
+     * while the rows are streamed from the database. The same batch is cleared and reused for the next rows, so the
+     * handler should not keep a reference to it. Dictionaries are kept between batches, so the codes of strings and enums
+     * are the same in every batch. If reading from a replica fails after a batch was passed to the handler, the read is not
+     * retried on another replica and the exception is thrown, since the handler would receive the same rows twice.
+     */
+    public void readColumnBatches(Class<?> _class, List<String> columns, int batchSize, Consumer<ColumnBatch> handler, String clause, Object... args) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive, was " + batchSize);
         }
-        try {
-            Constructor constructor = aClass.getConstructor();
-            return new NoArgsConstructor<>(constructor, fields);
-        } catch (NoSuchMethodException exp2) {
-            throw new RuntimeException("Could not construct instance of type " + aClass + ", need a constructor without arguments, or a constructor with all arguments of same type and order as the fields");
+        readIntoColumnBatches(_class, columns, batchSize, handler, clause, args);
+    }
+
+    /**
+     * @param handler receives every full batch and the last batch, or null to read all rows in the returned batch
+     */
+    private ColumnBatch readIntoColumnBatches(Class<?> _class, List<String> columns, int batchSize, Consumer<ColumnBatch> handler, String clause, Object[] args) {
+        EntityMapping<?> projection = entityMappingService.getProjection(_class, columns);
+        String query = buildQuery(projection, clause);
+        ColumnBatch batch = ColumnBatch.create(projection.getColumns());
+        AtomicBoolean handedOver = new AtomicBoolean();
+        return executeRead(projection.getTable(), connection -> {
+            //Could contain rows of a failed attempt on a replica
+            batch.clear();
+            try (PreparedStatement statement = connection.prepareStatement(query, java.sql.ResultSet.TYPE_FORWARD_ONLY, java.sql.ResultSet.CONCUR_READ_ONLY)) {
+                setStreamingFetchSize(statement);
+                writeFields(statement, args);
+                Object event = JfrEvents.begin(JfrEvents.Kind.READ);
+                long start = metrics.start();
+                long numOfRows = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    long executed = metrics.start();
+                    while (resultSet.next()) {
+                        batch.readRow(resultSet);
+                        numOfRows++;
+                        if (handler != null && batch.size() == batchSize) {
+                            handedOver.set(true);
+                            handler.accept(batch);
+                            batch.clear();
+                        }
+                    }
+                    if (handler != null && batch.size() > 0) {
+                        handedOver.set(true);
+                        handler.accept(batch);
+                        batch.clear();
+                    }
+                    metrics.recordRead(projection.getTable(), SqlBuilder.SELECT, query, args, start, executed, numOfRows);
+                    JfrEvents.commit(event, projection, query, numOfRows);
+                }
+            }
+            return batch;
+        }, false, () -> !handedOver.get());
+    }
+
+    public <T> Stream<T> streamObjects(Class<T> _class) {
+        return streamObjects(_class, null);
+    }
+
+    /**
+     * Streams the objects from a single query. Parallel streams split off batches of database.streamBatchSize objects, so
+     * the mapping and processing of the objects runs on the fork-join pool while a single thread reads the result set.
+     * The stream holds a connection until it is exhausted or closed, use it in a try-with-resources block.
+     */
+    public <T> Stream<T> streamObjects(Class<T> _class, String clause, Object... args) {
+        BatchSpliterator<T> spliterator = new BatchSpliterator<>(readObjectsIt(_class, clause, args), streamBatchSize);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * Reads all objects of a table in parallel. The id range of the table is split in partitions, and every partition is
+     * streamed on its own connection and thread. At most database.maxScanThreads partitions (and never more than the size
+     * of the connection pool) are read at the same time. If a partition fails, the other partitions are stopped and all
+     * errors are reported in a single exception.
+     *
+     * @param consumer is called concurrently from multiple threads, so it needs to be thread safe
+     * @return the number of objects that were read
+     */
+    public <T> long scanParallel(Class<T> _class, int partitions, Consumer<T> consumer) {
+        EntityMapping<T> mapping = getMapping(_class);
+        if (mapping.getIdColumn() == null) {
+            throw new RuntimeException("Objects of " + _class + " do not have an id field, which is needed to scan them in parallel");
+        }
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("Number of partitions should be positive, got " + partitions);
         }
+        int numOfThreads = Math.min(partitions, Math.min(maxScanThreads, getMaxPoolSize()));
+        return new ParallelScan<>(this, mapping, partitions, numOfThreads, consumer).run();
     }
 
-    private String escape(String name) {
-        return "`" + name + "`";
+    public <T> CloseableIterator<T> readObjectsPaged(Class<T> _class) {
+        return readObjectsPaged(_class, pageSize, null);
     }
 
-    private String getTable(Class aClass) {
-        Annotation annotation = aClass.getAnnotation(Table.class);
-        if (annotation == null) {
-            return aClass.getSimpleName().toLowerCase();
-        } else {
-            return ((Table) annotation).value();
+    /**
+     * Iterates over all objects in pages of pageSize objects, ordered by id ("keyset pagination"). Unlike
+     * {@link #readObjectsIt(Class, String, Object...)}, every page is read with its own short transaction and no connection
+     * is held while the objects are processed. Rows that are inserted or updated during the iteration might or might not be
+     * returned, depending on their id.
+     *
+     * @param condition optional condition on the rows, without "where" (e.g. "active = ?"), or null to read all rows
+     */
+    public <T> CloseableIterator<T> readObjectsPaged(Class<T> _class, int pageSize, String condition, Object... args) {
+        EntityMapping<T> mapping = getMapping(_class);
+        ColumnMapping idColumn = mapping.getIdColumn();
+        if (idColumn == null) {
+            throw new RuntimeException("Objects of " + _class + " do not have an id field, which is needed to read them in pages");
         }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size should be positive, got " + pageSize);
+        }
+        String clause = SqlBuilder.nextPageClause(databaseType, condition, pageSize);
+        return new PagedIterator<>(afterId -> {
+            Object[] pageArgs = new Object[args.length + 1];
+            pageArgs[0] = afterId;
+            System.arraycopy(args, 0, pageArgs, 1, args.length);
+            return executeRead(mapping.getTable(), connection -> {
+                return readObjects(connection, _class, clause, pageArgs);
+            }, false);
+        }, object -> ((Number) idColumn.accessor.get(object)).longValue(), pageSize);
     }
 
-    public String getFieldsString(Class _class, boolean includeId, boolean addTable) {
-        String table = getTable(_class);
-        List<String> fields = getFieldNames(_class, includeId);
-        return getFieldsString(table, fields, addTable);
+    private <T> T readObject(ResultSet resultSet, EntityMapping<T> mapping) throws SQLException {
+        T object = mapping.getRowReader().read(resultSet);
+        if (mapping.isTrackChanges()) {
+            snapshot(mapping, object);
+        }
+        return object;
     }
 
-    private List<String> getFieldNames(Class _class, boolean includeId) {
-        return getFields(_class, includeId).map(Field::getName).collect(toList());
+    private <T> EntityMapping<T> getMapping(Class<T> _class) {
+        return entityMappingService.getMapping(_class);
+    }
+
+    private EntityMapping<?> getMapping(Object object) {
+        return entityMappingService.getMapping(object.getClass());
+    }
+
+    public String getFieldsString(Class _class, boolean includeId, boolean addTable) {
+        EntityMapping<?> mapping = getMapping(_class);
+        return SqlBuilder.columnList(databaseType, mapping.getTable(), mapping.getColumns(includeId), addTable);
     }
 
     public Stream<Field> getFields(Class _class, boolean includeId) {
-        Field[] fields = _class.getFields();
-        return Arrays.stream(fields).filter(field -> !field.getName().equals("id") || includeId);
+        EntityMapping<?> mapping = getMapping(_class);
+        return mapping.getColumns(includeId).stream().map(column -> column.field);
     }
 
     public int writeFields(PreparedStatement statement, Object object, boolean includeId) throws IllegalAccessException, SQLException {
-        List<Field> fields = getFields(object.getClass(), includeId).collect(toList());
-        return writeFields(statement, object, fields);
+        return writeFields(statement, object, getMapping(object).getColumns(includeId));
     }
 
-    private int writeFields(PreparedStatement statement, Object object, List<Field> fields) throws IllegalAccessException, SQLException {
-        Object[] values = new Object[fields.size()];
-        Class[] types = new Class[fields.size()];
-        for (int i = 0; i < fields.size(); i++) {
-            Field field = fields.get(i);
-            values[i] = field.get(object);
-            types[i] = field.getType();
-        }
-        return databaseTypeService.writeFields(1, statement, values, types);
+    private int writeFields(PreparedStatement statement, Object object, List<ColumnMapping> columns) throws SQLException {
+        return writeFields(statement, 1, object, columns);
     }
 
-    private String buildQuery(Class _class, String clause) {
-        String table = getTable(_class);
-        String query = "SELECT " + getFieldsString(_class, true, true) + " FROM " + escape(table);
-        if (clause != null) {
-            query += " " + clause;
+    private int writeFields(PreparedStatement statement, int startInd, Object object, List<ColumnMapping> columns) throws SQLException {
+        int ind = startInd;
+        for (ColumnMapping column : columns) {
+            column.codec.writeFrom(statement, ind++, object, column.accessor);
         }
-        return query;
+        return ind;
+    }
+
+    private String buildQuery(EntityMapping<?> mapping, String clause) {
+        return mapping.getSql(SqlBuilder.SELECT, clause, c -> SqlBuilder.select(mapping, databaseType, c));
     }
 
     public DatabaseType getDatabaseType() {
@@ -555,57 +1664,41 @@ public class DatabaseService implements LifeCycleBean {
         T execute(Connection connection) throws SQLException, InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException;
     }
 
-    public interface ArgsSetter {
-        void execute(PreparedStatement statement, int ind) throws SQLException;
+    public interface TransactionAction {
+        void execute(Transaction transaction) throws Exception;
     }
 
-    private interface InitializationMethod<T> {
-        T createObject(Object[] values) throws IllegalAccessException, InvocationTargetException, InstantiationException;
+    public interface TransactionActionWithResult<T> {
+        T execute(Transaction transaction) throws Exception;
     }
 
-    private static class AllArgsConstructor<T> implements InitializationMethod<T> {
-
-        private final Constructor<T> constructor;
-
-        private AllArgsConstructor(Constructor<T> constructor) {
-            this.constructor = constructor;
-        }
-
-        @Override
-        public T createObject(Object[] values) throws IllegalAccessException, InvocationTargetException, InstantiationException {
-            return (T) constructor.newInstance(values);
-        }
-    }
-
-    private static class NoArgsConstructor<T> implements InitializationMethod<T> {
-
-        private final Constructor<T> constructor;
-        private final List<Field> fields;
-
-        private NoArgsConstructor(Constructor<T> constructor, List<Field> fields) {
-            this.constructor = constructor;
-            this.fields = fields;
-        }
-
-        @Override
-        public T createObject(Object[] values) throws IllegalAccessException, InvocationTargetException, InstantiationException {
-            T instance = (T) constructor.newInstance();
-            for (int i = 0; i < fields.size(); i++) {
-                fields.get(i).set(instance, values[i]);
-            }
-            return instance;
-        }
+    public interface ArgsSetter {
+        void execute(PreparedStatement statement, int ind) throws SQLException;
     }
 
-    public static class WrappedResultSet {
+    public static class WrappedResultSet implements AutoCloseable {
         private final String query;
         private final Connection connection;
         private final ResultSet resultSet;
+        private final DatabaseService databaseService;
+        private final long acquired;
 
+        /**
+         * @param connection closed together with the result set, or null if the connection belongs to a transaction
+         */
         public WrappedResultSet(String query, Connection connection, ResultSet resultSet) {
+            this(query, connection, resultSet, null, 0);
+        }
+
+        /**
+         * @param databaseService closes the connection, to record how long it was held and release it from leak detection
+         */
+        WrappedResultSet(String query, Connection connection, ResultSet resultSet, DatabaseService databaseService, long acquired) {
             this.query = query;
             this.connection = connection;
             this.resultSet = resultSet;
+            this.databaseService = databaseService;
+            this.acquired = acquired;
         }
 
         public <T> T result(ResultSetHandler<T> handler) {
@@ -629,22 +1722,42 @@ public class DatabaseService implements LifeCycleBean {
             }
         }
 
+        /**
+         * Returns the connection to the pool without reading the results. Only needed if neither result() nor results()
+         * is called.
+         */
         @Override
-        protected void finalize() throws Throwable {
+        public void close() {
             closeConnection();
-            super.finalize();
         }
 
         private void closeConnection() {
             try {
-                connection.close();
+                Statement statement = resultSet.getStatement();
+                resultSet.close();
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (SQLException e) {
+                Log.i("Received exception while closing statement", e);
+            }
+            if (connection == null) {
+                //The connection belongs to a transaction
+                return;
+            }
+            try {
+                if (databaseService != null) {
+                    databaseService.closeConnection(connection, acquired);
+                } else {
+                    connection.close();
+                }
             } catch (SQLException e) {
                 Log.i("Received exception while closing connection", e);
             }
         }
 
         public <T> List<T> results(ResultSetHandler<T> handler) {
-            return noException(() -> {
+            return executeAndClose(() -> {
                 List<T> results = new ArrayList<>();
                 boolean moreResults = resultSet.first();
                 while (moreResults) {
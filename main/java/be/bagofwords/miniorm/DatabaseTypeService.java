@@ -1,18 +1,99 @@
 package be.bagofwords.miniorm;
 
-import be.bagofwords.miniorm.data.ReadField;
+import be.bagofwords.miniorm.codec.CodecFactory;
+import be.bagofwords.miniorm.codec.ColumnCodec;
+import be.bagofwords.miniorm.codec.EnumCodecs;
+import be.bagofwords.miniorm.codec.ObjectCodecs;
+import be.bagofwords.miniorm.codec.PrimitiveCodecs;
 
 import java.lang.reflect.Field;
-import java.sql.*;
-import java.util.ArrayList;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Created by koen on 19/03/17.
  */
 public class DatabaseTypeService {
 
+    private final Map<Class, ColumnCodec> codecs = new ConcurrentHashMap<>();
+    private final Map<Class, ColumnCodec> createdCodecs = new ConcurrentHashMap<>();
+    private final List<CodecFactory> codecFactories = new CopyOnWriteArrayList<>();
+
+    public DatabaseTypeService() {
+        registerCodec(int.class, new PrimitiveCodecs.PrimitiveIntCodec());
+        registerCodec(Integer.class, new PrimitiveCodecs.IntCodec());
+        registerCodec(long.class, new PrimitiveCodecs.PrimitiveLongCodec());
+        registerCodec(Long.class, new PrimitiveCodecs.LongCodec());
+        registerCodec(double.class, new PrimitiveCodecs.PrimitiveDoubleCodec());
+        registerCodec(Double.class, new PrimitiveCodecs.DoubleCodec());
+        registerCodec(boolean.class, new PrimitiveCodecs.PrimitiveBooleanCodec());
+        registerCodec(Boolean.class, new PrimitiveCodecs.BooleanCodec());
+        registerCodec(String.class, new ObjectCodecs.StringCodec());
+        registerCodec(Date.class, new ObjectCodecs.DateCodec());
+        registerCodec(Instant.class, new ObjectCodecs.InstantCodec());
+        registerCodec(LocalDateTime.class, new ObjectCodecs.LocalDateTimeCodec());
+        registerCodec(byte[].class, new ObjectCodecs.ByteArrayCodec());
+        registerCodec(BigDecimal.class, new ObjectCodecs.BigDecimalCodec());
+        registerCodec(UUID.class, new ObjectCodecs.UuidCodec());
+        registerCodecFactory(new EnumCodecs());
+    }
+
+    /**
+     * Registers (or replaces) the codec of a type. Mappings of entities are built once, so codecs should be registered
+     * before the first object of an entity that uses them is read or written.
+     */
+    public <T> void registerCodec(Class<T> type, ColumnCodec<? super T> codec) {
+        codecs.put(type, codec);
+        createdCodecs.remove(type);
+    }
+
+    /**
+     * Factories are consulted, in the order they were registered, for types that have no codec registered directly.
+     */
+    public void registerCodecFactory(CodecFactory codecFactory) {
+        codecFactories.add(codecFactory);
+    }
+
+    public ColumnCodec getCodec(Field field) {
+        return getCodec(field.getType(), field);
+    }
+
+    public ColumnCodec getCodec(Class<?> type) {
+        ColumnCodec codec = codecs.get(type);
+        if (codec == null) {
+            //Codecs created for a field can depend on its annotations, so only these are cached by type
+            codec = createdCodecs.get(type);
+            if (codec == null) {
+                codec = getCodec(type, null);
+                createdCodecs.put(type, codec);
+            }
+        }
+        return codec;
+    }
+
+    private ColumnCodec getCodec(Class<?> type, Field field) {
+        ColumnCodec codec = codecs.get(type);
+        if (codec != null) {
+            return codec;
+        }
+        for (CodecFactory codecFactory : codecFactories) {
+            codec = codecFactory.createCodec(type, field);
+            if (codec != null) {
+                return codec;
+            }
+        }
+        throw new RuntimeException("Unknown type " + type);
+    }
+
     public void writeField(Object object, Object value, String name) throws NoSuchFieldException, IllegalAccessException {
         Class<?> objClass = object.getClass();
         Field field = objClass.getField(name);
@@ -22,91 +103,13 @@ public class DatabaseTypeService {
 
     public int writeFields(int startInd, PreparedStatement statement, Object[] values, Class[] types) throws SQLException {
         for (int i = 0; i < values.length; i++) {
-            Object value = values[i];
-            Class<?> type = types[i];
-            int ind = i + startInd;
-            if (value == null) {
-                statement.setNull(ind, getSQLType(type));
-                continue;
-            }
-            if (type.equals(Integer.class) || type.equals(int.class)) {
-                statement.setInt(ind, (Integer) value);
-            } else if (type.equals(Long.class) || type.equals(long.class)) {
-                statement.setLong(ind, (Long) value);
-            } else if (type.equals(Boolean.class) || type.equals(boolean.class)) {
-                statement.setBoolean(ind, (Boolean) value);
-            } else if (type.equals(Double.class) || type.equals(double.class)) {
-                statement.setDouble(ind, (Double) value);
-            } else if (type.equals(String.class)) {
-                statement.setString(ind, (String) value);
-            } else if (type.equals(Date.class)) {
-                statement.setTimestamp(ind, new Timestamp(((Date) value).getTime()));
-            } else if (type.isEnum()) {
-                statement.setString(ind, value.toString());
-            } else {
-                throw new RuntimeException("Unknown type " + type);
-            }
+            getCodec(types[i]).writeValue(statement, i + startInd, values[i]);
         }
         return startInd + values.length;
     }
 
     public int getSQLType(Class<?> type) {
-        if (type.equals(Integer.class) || type.equals(int.class)) {
-            return Types.INTEGER;
-        } else if (type.equals(Long.class) || type.equals(long.class)) {
-            return Types.BIGINT;
-        } else if (type.equals(Boolean.class) || type.equals(boolean.class)) {
-            return Types.BOOLEAN;
-        } else if (type.equals(Double.class) || type.equals(double.class)) {
-            return Types.DOUBLE;
-        } else if (type.equals(String.class)) {
-            return Types.VARCHAR;
-        } else if (type.equals(Date.class)) {
-            return Types.TIMESTAMP;
-        } else if (type.isEnum()) {
-            return Types.VARCHAR;
-        } else {
-            throw new RuntimeException("Unknown type " + type);
-        }
-    }
-
-    public List<ReadField> readObjectFields(ResultSet resultSet, List<Field> fields) throws SQLException {
-        List<ReadField> values = new ArrayList<>();
-        for (int i = 0; i < fields.size(); i++) {
-            Field field = fields.get(i);
-            int ind = i + 1;
-            Class<?> type = field.getType();
-            Object value;
-            if (type.equals(Integer.class) || type.equals(int.class)) {
-                value = resultSet.getInt(ind);
-            } else if (type.equals(Long.class) || type.equals(long.class)) {
-                value = resultSet.getLong(ind);
-            } else if (type.equals(Boolean.class) || type.equals(boolean.class)) {
-                value = resultSet.getBoolean(ind);
-            } else if (type.equals(Double.class) || type.equals(double.class)) {
-                value = resultSet.getDouble(ind);
-            } else if (type.equals(String.class)) {
-                value = resultSet.getString(ind);
-            } else if (type.equals(Date.class)) {
-                Timestamp timestamp = resultSet.getTimestamp(ind);
-                if (timestamp == null) {
-                    value = null;
-                } else {
-                    value = new Date(timestamp.getTime());
-                }
-            } else if (type.isEnum()) {
-                String enumValue = resultSet.getString(ind);
-                if (enumValue == null) {
-                    value = null;
-                } else {
-                    value = Enum.valueOf((Class<Enum>) type, enumValue);
-                }
-            } else {
-                throw new RuntimeException("Unknown type " + type);
-            }
-            values.add(new ReadField(value, type));
-        }
-        return values;
+        return getCodec(type).getSqlType();
     }
 
 }
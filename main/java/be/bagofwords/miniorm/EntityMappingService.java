@@ -0,0 +1,156 @@
+package be.bagofwords.miniorm;
+
+import be.bagofwords.logging.Log;
+import be.bagofwords.minidepi.annotations.Inject;
+import be.bagofwords.miniorm.cache.EntityCache;
+import be.bagofwords.miniorm.mapping.ColumnMapping;
+import be.bagofwords.miniorm.mapping.EntityMapping;
+import be.bagofwords.miniorm.mapping.GeneratedMapper;
+import be.bagofwords.miniorm.mapping.GeneratedMappers;
+import be.bagofwords.miniorm.mapping.InitializationMethod;
+import be.bagofwords.miniorm.mapping.InitializationMethods;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds and caches the {@link EntityMapping} of every class that is read or written through the {@link DatabaseService}.
+ */
+public class EntityMappingService {
+
+    @Inject
+    private DatabaseTypeService databaseTypeService;
+
+    /**
+     * Column lists are usually constants in the calling code. This bounds the number of projections that are cached per
+     * class if they are built dynamically.
+     */
+    private static final int MAX_CACHED_PROJECTIONS = 512;
+
+    private final Map<Class, EntityMapping> mappings = new ConcurrentHashMap<>();
+    private final Map<Class, Map<List<String>, EntityMapping>> projections = new ConcurrentHashMap<>();
+
+    public <T> EntityMapping<T> getMapping(Class<T> entityClass) {
+        //Plain get() first: ConcurrentHashMap.computeIfAbsent() locks the bin even if the mapping is already present
+        EntityMapping<T> mapping = mappings.get(entityClass);
+        if (mapping == null) {
+            mapping = mappings.computeIfAbsent(entityClass, this::createMapping);
+        }
+        return mapping;
+    }
+
+    /**
+     * @return a mapping of the class onto the given columns of its table only. The mapping does not track changes and does
+     * not cache objects, since the objects it creates are incomplete.
+     */
+    public <T> EntityMapping<T> getProjection(Class<T> entityClass, List<String> columnNames) {
+        Map<List<String>, EntityMapping> classProjections = projections.get(entityClass);
+        if (classProjections == null) {
+            classProjections = projections.computeIfAbsent(entityClass, c -> new ConcurrentHashMap<>());
+        }
+        EntityMapping<T> projection = classProjections.get(columnNames);
+        if (projection == null) {
+            projection = createProjection(getMapping(entityClass), columnNames);
+            if (classProjections.size() < MAX_CACHED_PROJECTIONS) {
+                classProjections.put(new ArrayList<>(columnNames), projection);
+            }
+        }
+        return projection;
+    }
+
+    private <T> EntityMapping<T> createProjection(EntityMapping<T> mapping, List<String> columnNames) {
+        if (columnNames.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one column to read from table " + mapping.getTable());
+        }
+        List<ColumnMapping> columns = new ArrayList<>();
+        for (String columnName : columnNames) {
+            ColumnMapping column = mapping.getColumns().stream().filter(c -> c.name.equals(columnName)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Class " + mapping.getEntityClass() + " has no column " + columnName));
+            columns.add(column);
+        }
+        Class<T> entityClass = mapping.getEntityClass();
+        return new EntityMapping<>(entityClass, mapping.getTable(), columns, InitializationMethods.determine(entityClass, columns), false, null);
+    }
+
+    /**
+     * Builds the mappings of all classes with a generated mapper, so the first request that uses one of these classes
+     * does not pay for it.
+     *
+     * @return the number of generated mappers that were found
+     */
+    public int loadGeneratedMappers() {
+        List<GeneratedMapper<?>> generatedMappers = GeneratedMappers.loadAll();
+        for (GeneratedMapper<?> mapper : generatedMappers) {
+            mappings.computeIfAbsent(mapper.getEntityClass(), c -> createMapping(mapper));
+        }
+        return generatedMappers.size();
+    }
+
+    private <T> EntityMapping<T> createMapping(Class<T> entityClass) {
+        GeneratedMapper<T> mapper = GeneratedMappers.find(entityClass);
+        if (mapper != null) {
+            return createMapping(mapper);
+        }
+        return createReflectionMapping(entityClass);
+    }
+
+    private <T> EntityMapping<T> createReflectionMapping(Class<T> entityClass) {
+        List<ColumnMapping> columns = new ArrayList<>();
+        for (Field field : entityClass.getFields()) {
+            columns.add(new ColumnMapping(field, databaseTypeService.getCodec(field)));
+        }
+        return createMapping(entityClass, getTable(entityClass), columns, InitializationMethods.determine(entityClass, columns));
+    }
+
+    /**
+     * The fields are still looked up once, since codecs can depend on their annotations. Reading and writing the fields
+     * and constructing objects happens through the generated code. A mapper that was generated before fields were added,
+     * removed, reordered or changed type is ignored, and the class is mapped with reflection instead.
+     */
+    private <T> EntityMapping<T> createMapping(GeneratedMapper<T> mapper) {
+        Class<T> entityClass = mapper.getEntityClass();
+        Field[] fields = entityClass.getFields();
+        List<String> fieldNames = new ArrayList<>(fields.length);
+        List<Class<?>> fieldTypes = new ArrayList<>(fields.length);
+        for (Field field : fields) {
+            fieldNames.add(field.getName());
+            fieldTypes.add(field.getType());
+        }
+        if (!fieldNames.equals(mapper.getColumnNames())) {
+            Log.i("Generated mapper of " + entityClass + " is out of date, it maps " + mapper.getColumnNames() + " but the class has fields " + fieldNames + ". Mapping the class with reflection, recompile it to regenerate the mapper.");
+            return createReflectionMapping(entityClass);
+        }
+        if (!fieldTypes.equals(mapper.getColumnTypes())) {
+            Log.i("Generated mapper of " + entityClass + " is out of date, it maps fields of types " + mapper.getColumnTypes() + " but the class has fields of types " + fieldTypes + ". Mapping the class with reflection, recompile it to regenerate the mapper.");
+            return createReflectionMapping(entityClass);
+        }
+        List<ColumnMapping> columns = new ArrayList<>();
+        for (Field field : fields) {
+            columns.add(new ColumnMapping(field, databaseTypeService.getCodec(field), mapper.getAccessor(field.getName())));
+        }
+        return createMapping(entityClass, mapper.getTable(), columns, InitializationMethods.determine(mapper, columns));
+    }
+
+    private <T> EntityMapping<T> createMapping(Class<T> entityClass, String table, List<ColumnMapping> columns, InitializationMethod<T> initializationMethod) {
+        boolean trackChanges = entityClass.isAnnotationPresent(TrackChanges.class);
+        CacheById cacheById = entityClass.getAnnotation(CacheById.class);
+        if (cacheById != null && columns.stream().noneMatch(ColumnMapping::isId)) {
+            throw new RuntimeException("Class " + entityClass + " is annotated with @CacheById but does not have an id field");
+        }
+        EntityCache cache = cacheById == null ? null : new EntityCache(cacheById.maxSize(), cacheById.ttlSeconds());
+        return new EntityMapping<>(entityClass, table, columns, initializationMethod, trackChanges, cache);
+    }
+
+    private String getTable(Class<?> entityClass) {
+        Table annotation = entityClass.getAnnotation(Table.class);
+        if (annotation == null) {
+            return entityClass.getSimpleName().toLowerCase();
+        } else {
+            return annotation.value();
+        }
+    }
+
+}
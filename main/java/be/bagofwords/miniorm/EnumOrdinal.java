@@ -0,0 +1,14 @@
+package be.bagofwords.miniorm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stores an enum field as the ordinal of its constant (an integer column) instead of its name.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD})
+public @interface EnumOrdinal {
+}
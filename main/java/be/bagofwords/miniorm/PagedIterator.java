@@ -0,0 +1,70 @@
+package be.bagofwords.miniorm;
+
+import be.bagofwords.iterator.CloseableIterator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the rows of a table in pages, ordered by id. Every page is read with a separate short transaction, no
+ * connection is held between pages.
+ */
+class PagedIterator<T> extends CloseableIterator<T> {
+
+    private final PageReader<T> pageReader;
+    private final IdReader<T> idReader;
+    private final int pageSize;
+    private List<T> page = Collections.emptyList();
+    private int ind;
+    private long lastId = Long.MIN_VALUE;
+    private boolean lastPage;
+
+    PagedIterator(PageReader<T> pageReader, IdReader<T> idReader, int pageSize) {
+        this.pageReader = pageReader;
+        this.idReader = idReader;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ind < page.size()) {
+            return true;
+        }
+        if (lastPage) {
+            return false;
+        }
+        page = pageReader.readPage(lastId);
+        ind = 0;
+        lastPage = page.size() < pageSize;
+        if (!page.isEmpty()) {
+            lastId = idReader.getId(page.get(page.size() - 1));
+        }
+        return !page.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(ind++);
+    }
+
+    @Override
+    protected void closeInt() {
+        page = Collections.emptyList();
+        lastPage = true;
+    }
+
+    interface PageReader<T> {
+        /**
+         * @return the first rows with an id larger than afterId, ordered by id
+         */
+        List<T> readPage(long afterId);
+    }
+
+    interface IdReader<T> {
+        long getId(T object);
+    }
+}
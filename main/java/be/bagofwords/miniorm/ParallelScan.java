@@ -0,0 +1,132 @@
+package be.bagofwords.miniorm;
+
+import be.bagofwords.iterator.CloseableIterator;
+import be.bagofwords.miniorm.data.DatabaseType;
+import be.bagofwords.miniorm.mapping.EntityMapping;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Reads all rows of a table by splitting its id range in partitions. Every partition is streamed on its own connection
+ * and thread.
+ */
+class ParallelScan<T> {
+
+    private static final AtomicInteger scanCount = new AtomicInteger();
+
+    private final DatabaseService databaseService;
+    private final EntityMapping<T> mapping;
+    private final int numOfPartitions;
+    private final int numOfThreads;
+    private final Consumer<T> consumer;
+    private final AtomicBoolean failed = new AtomicBoolean();
+    private final AtomicLong numOfRows = new AtomicLong();
+
+    ParallelScan(DatabaseService databaseService, EntityMapping<T> mapping, int numOfPartitions, int numOfThreads, Consumer<T> consumer) {
+        this.databaseService = databaseService;
+        this.mapping = mapping;
+        this.numOfPartitions = numOfPartitions;
+        this.numOfThreads = numOfThreads;
+        this.consumer = consumer;
+    }
+
+    long run() {
+        long[] range = readIdRange();
+        if (range == null) {
+            //Empty table
+            return 0;
+        }
+        long min = range[0];
+        long max = range[1];
+        //The width of the range can exceed Long.MAX_VALUE, so it is treated as unsigned
+        long span = Long.divideUnsigned(max - min, numOfPartitions);
+        String id = SqlBuilder.escape(databaseService.getDatabaseType(), EntityMapping.ID_COLUMN);
+        String clause = "WHERE " + id + " >= ? AND " + id + " <= ?";
+        int scanId = scanCount.incrementAndGet();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(numOfThreads, runnable -> {
+            Thread thread = new Thread(runnable, "mini-orm-scan-" + scanId + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            long from = min;
+            while (true) {
+                long to = Long.compareUnsigned(max - from, span) <= 0 ? max : from + span;
+                long partitionFrom = from;
+                futures.add(executor.submit(() -> scanPartition(clause, partitionFrom, to)));
+                if (to == max) {
+                    break;
+                }
+                from = to + 1;
+            }
+            List<Throwable> errors = new ArrayList<>();
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    errors.add(e.getCause());
+                } catch (InterruptedException e) {
+                    failed.set(true);
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while scanning " + mapping.getTable(), e);
+                }
+            }
+            if (!errors.isEmpty()) {
+                RuntimeException exception = new RuntimeException(errors.size() + " of " + futures.size() + " partitions of the scan of " + mapping.getTable() + " failed", errors.get(0));
+                for (int i = 1; i < errors.size(); i++) {
+                    exception.addSuppressed(errors.get(i));
+                }
+                throw exception;
+            }
+            return numOfRows.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void scanPartition(String clause, long from, long to) {
+        if (failed.get()) {
+            return;
+        }
+        try (CloseableIterator<T> iterator = databaseService.readObjectsIt(mapping.getEntityClass(), clause, from, to)) {
+            while (!failed.get() && iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                numOfRows.incrementAndGet();
+            }
+        } catch (RuntimeException | Error e) {
+            //Stop the other partitions as soon as possible
+            failed.set(true);
+            throw e;
+        }
+    }
+
+    private long[] readIdRange() {
+        DatabaseType databaseType = databaseService.getDatabaseType();
+        String id = SqlBuilder.escape(databaseType, EntityMapping.ID_COLUMN);
+        String query = "SELECT MIN(" + id + "), MAX(" + id + ") FROM " + SqlBuilder.escape(databaseType, mapping.getTable());
+        return databaseService.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(query);
+                 ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                long min = resultSet.getLong(1);
+                if (resultSet.wasNull()) {
+                    return null;
+                }
+                return new long[]{min, resultSet.getLong(2)};
+            }
+        });
+    }
+}
@@ -0,0 +1,220 @@
+package be.bagofwords.miniorm;
+
+import be.bagofwords.miniorm.data.DatabaseType;
+import be.bagofwords.miniorm.mapping.ColumnMapping;
+import be.bagofwords.miniorm.mapping.EntityMapping;
+
+import java.util.List;
+
+/**
+ * Generates the SQL statements of the {@link DatabaseService}. The results are cached per entity by
+ * {@link EntityMapping#getSql(String, String, java.util.function.Function)}, so these methods are only called the first
+ * time a statement is needed.
+ */
+class SqlBuilder {
+
+    static final String SELECT = "select";
+    static final String INSERT = "insert";
+    static final String INSERT_WITH_ID = "insertWithId";
+    static final String INSERT_MULTI_ROW = "insertMultiRow";
+    static final String INSERT_MULTI_ROW_WITH_ID = "insertMultiRowWithId";
+    static final String UPSERT = "upsert";
+    static final String UPDATE = "update";
+    static final String UPDATE_CHANGED = "updateChanged";
+    static final String DELETE = "delete";
+
+    private SqlBuilder() {
+    }
+
+    /**
+     * Quotes an identifier for the given database: brackets for SQL Server, double quotes for Oracle and backticks for the
+     * other databases. Identifiers in double quotes are case sensitive in Oracle, so the table and column names of
+     * entities need to match the case of the names in the database.
+     */
+    static String escape(DatabaseType databaseType, String name) {
+        switch (databaseType) {
+            case MSSQL:
+                return "[" + name + "]";
+            case ORACLE:
+                return "\"" + name + "\"";
+            default:
+                return "`" + name + "`";
+        }
+    }
+
+    static String columnList(DatabaseType databaseType, String table, List<ColumnMapping> columns, boolean addTable) {
+        String cleanedTable = escape(databaseType, table);
+        StringBuilder result = new StringBuilder();
+        for (ColumnMapping column : columns) {
+            if (result.length() > 0) {
+                result.append(",");
+            }
+            if (addTable) {
+                result.append(cleanedTable).append(".");
+            }
+            result.append(escape(databaseType, column.name));
+        }
+        return result.toString();
+    }
+
+    static String placeholders(int numOfColumns) {
+        StringBuilder result = new StringBuilder("(");
+        for (int i = 0; i < numOfColumns; i++) {
+            if (i > 0) {
+                result.append(",");
+            }
+            result.append("?");
+        }
+        return result.append(")").toString();
+    }
+
+    /**
+     * @return the clause that selects the next page of rows, ordered by id, after the id given as first argument
+     */
+    static String nextPageClause(DatabaseType databaseType, String condition, int pageSize) {
+        String id = escape(databaseType, EntityMapping.ID_COLUMN);
+        StringBuilder clause = new StringBuilder("WHERE ").append(id).append(" > ?");
+        if (condition != null) {
+            clause.append(" AND (").append(condition).append(")");
+        }
+        clause.append(" ORDER BY ").append(id);
+        switch (databaseType) {
+            case MSSQL:
+                return clause.append(" OFFSET 0 ROWS FETCH NEXT ").append(pageSize).append(" ROWS ONLY").toString();
+            case ORACLE:
+                return clause.append(" FETCH FIRST ").append(pageSize).append(" ROWS ONLY").toString();
+            default:
+                return clause.append(" LIMIT ").append(pageSize).toString();
+        }
+    }
+
+    static String select(EntityMapping<?> mapping, DatabaseType databaseType, String clause) {
+        return withClause("SELECT " + columnList(databaseType, mapping.getTable(), mapping.getColumns(), true) + " FROM " + escape(databaseType, mapping.getTable()), clause);
+    }
+
+    static String insert(EntityMapping<?> mapping, DatabaseType databaseType, boolean includeId) {
+        List<ColumnMapping> columns = mapping.getColumns(includeId);
+        return "insert into " + mapping.getTable() + " (" + columnList(databaseType, mapping.getTable(), columns, false) + ") values " + placeholders(columns.size());
+    }
+
+    static String insertMultiRow(EntityMapping<?> mapping, DatabaseType databaseType, boolean includeId, int numOfRows) {
+        List<ColumnMapping> columns = mapping.getColumns(includeId);
+        return "insert into " + mapping.getTable() + " (" + columnList(databaseType, mapping.getTable(), columns, false) + ") values " + rows(columns.size(), numOfRows);
+    }
+
+    /**
+     * Inserts rows, or updates them if a row with the same id already exists, in a single statement.
+     *
+     * @param numOfRows number of rows in the statement. Oracle does not support multiple rows in a merge statement, for
+     *                  this database the number of rows needs to be 1.
+     *                  <p>
+     *                  The merge statement of SQL Server inserts the id of new rows explicitly, so the id column can not
+     *                  be an identity column for this database.
+     */
+    static String upsert(EntityMapping<?> mapping, DatabaseType databaseType, int numOfRows) {
+        String table = mapping.getTable();
+        List<ColumnMapping> columns = mapping.getColumns();
+        String id = escape(databaseType, EntityMapping.ID_COLUMN);
+        switch (databaseType) {
+            case MYSQL: {
+                StringBuilder query = new StringBuilder(insertMultiRow(mapping, databaseType, true, numOfRows)).append(" on duplicate key update ");
+                if (mapping.getColumns(false).isEmpty()) {
+                    query.append(id).append("=").append(id);
+                } else {
+                    appendAssignments(query, databaseType, mapping.getColumns(false), "values(", ")");
+                }
+                return query.toString();
+            }
+            case H2:
+                return "merge into " + table + " (" + columnList(databaseType, table, columns, false) + ") key (" + id + ") values " + rows(columns.size(), numOfRows);
+            case MSSQL: {
+                StringBuilder query = new StringBuilder("merge into ").append(table).append(" as target using (values ").append(rows(columns.size(), numOfRows))
+                        .append(") as source (").append(columnList(databaseType, table, columns, false)).append(") on target.").append(id).append(" = source.").append(id);
+                appendMergeActions(query, databaseType, mapping);
+                return query.append(";").toString();
+            }
+            case ORACLE: {
+                if (numOfRows != 1) {
+                    throw new IllegalArgumentException("Oracle merge statements can only contain a single row");
+                }
+                StringBuilder query = new StringBuilder("merge into ").append(table).append(" target using (select ");
+                for (int i = 0; i < columns.size(); i++) {
+                    if (i > 0) {
+                        query.append(", ");
+                    }
+                    query.append("? as ").append(escape(databaseType, columns.get(i).name));
+                }
+                query.append(" from dual) source on (target.").append(id).append(" = source.").append(id).append(")");
+                appendMergeActions(query, databaseType, mapping);
+                return query.toString();
+            }
+            default:
+                throw new UnsupportedOperationException("No native upsert statement for database type " + databaseType);
+        }
+    }
+
+    private static void appendMergeActions(StringBuilder query, DatabaseType databaseType, EntityMapping<?> mapping) {
+        List<ColumnMapping> columns = mapping.getColumns();
+        if (!mapping.getColumns(false).isEmpty()) {
+            query.append(" when matched then update set ");
+            appendAssignments(query, databaseType, mapping.getColumns(false), "source.", "");
+        }
+        query.append(" when not matched then insert (").append(columnList(databaseType, mapping.getTable(), columns, false)).append(") values (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                query.append(",");
+            }
+            query.append("source.").append(escape(databaseType, columns.get(i).name));
+        }
+        query.append(")");
+    }
+
+    private static void appendAssignments(StringBuilder query, DatabaseType databaseType, List<ColumnMapping> columns, String valuePrefix, String valueSuffix) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                query.append(", ");
+            }
+            String column = escape(databaseType, columns.get(i).name);
+            query.append(column).append("=").append(valuePrefix).append(column).append(valueSuffix);
+        }
+    }
+
+    private static String rows(int numOfColumns, int numOfRows) {
+        String row = placeholders(numOfColumns);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < numOfRows; i++) {
+            if (i > 0) {
+                result.append(",");
+            }
+            result.append(row);
+        }
+        return result.toString();
+    }
+
+    static String update(EntityMapping<?> mapping, DatabaseType databaseType, List<ColumnMapping> columns, String clause) {
+        StringBuilder query = new StringBuilder("update ").append(mapping.getTable()).append(" set ");
+        boolean firstField = true;
+        for (ColumnMapping column : columns) {
+            if (firstField) {
+                firstField = false;
+            } else {
+                query.append(", ");
+            }
+            query.append(escape(databaseType, column.name)).append("=? ");
+        }
+        return query.append(clause).toString();
+    }
+
+    static String delete(EntityMapping<?> mapping, DatabaseType databaseType, String clause) {
+        return withClause("DELETE FROM " + escape(databaseType, mapping.getTable()), clause);
+    }
+
+    private static String withClause(String query, String clause) {
+        if (clause != null) {
+            return query + " " + clause;
+        } else {
+            return query;
+        }
+    }
+
+}
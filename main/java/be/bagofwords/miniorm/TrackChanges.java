@@ -0,0 +1,15 @@
+package be.bagofwords.miniorm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Remembers the column values of objects of this class when they are read. {@link DatabaseService#updateObjectWithId(Object)}
+ * then only writes the columns that were changed, and skips the update if no column was changed.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface TrackChanges {
+}
@@ -0,0 +1,112 @@
+package be.bagofwords.miniorm;
+
+import be.bagofwords.miniorm.cache.EntityCache;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A unit of work started with {@link DatabaseService#transaction(DatabaseService.TransactionAction)}. While it is bound to
+ * a thread, every method of the {@link DatabaseService} that is called on that thread uses its connection, and nothing is
+ * committed until the transaction ends. A transaction can be handed to another thread with
+ * {@link DatabaseService#joinTransaction(Transaction, DatabaseService.TransactionAction)}, as long as it is not used by
+ * two threads at the same time.
+ * <p>
+ * Caches are invalidated for every write, and again when the transaction ends, so other threads can not cache rows that
+ * were read before the transaction committed. Objects of a class annotated with {@link TrackChanges} that were read or
+ * written in a transaction that is rolled back are no longer tracked, so their next update writes all columns.
+ */
+public class Transaction {
+
+    private final Connection connection;
+    private final Set<String> writtenTables = new HashSet<>();
+    private final Set<EntityCache> writtenCaches = new HashSet<>();
+    private final List<Object> snapshottedObjects = new ArrayList<>();
+    private boolean allTablesWritten;
+    private boolean rollbackOnly;
+    private boolean failed;
+    private boolean completed;
+
+    Transaction(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @return the connection of this transaction, for statements that are not supported by the DatabaseService. It should
+     * not be committed, rolled back or closed.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Rolls back this transaction when it ends, instead of committing it
+     */
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    <T> T execute(DatabaseService.DatabaseActionWithResult<T> action) {
+        if (completed) {
+            throw new IllegalStateException("Transaction has already ended");
+        }
+        try {
+            return action.execute(connection);
+        } catch (Throwable t) {
+            //The transaction can not be committed, even if the caller ignores this exception
+            failed = true;
+            throw new RuntimeException(t);
+        }
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    void tableWritten(String table) {
+        writtenTables.add(table);
+    }
+
+    void allTablesWritten() {
+        allTablesWritten = true;
+    }
+
+    void cacheWritten(EntityCache cache) {
+        writtenCaches.add(cache);
+    }
+
+    void objectSnapshotted(Object object) {
+        snapshottedObjects.add(object);
+    }
+
+    List<Object> getSnapshottedObjects() {
+        return snapshottedObjects;
+    }
+
+    Set<String> getWrittenTables() {
+        return writtenTables;
+    }
+
+    Set<EntityCache> getWrittenCaches() {
+        return writtenCaches;
+    }
+
+    boolean isAllTablesWritten() {
+        return allTablesWritten;
+    }
+
+    void complete() {
+        completed = true;
+    }
+}
@@ -0,0 +1,208 @@
+package be.bagofwords.miniorm;
+
+import be.bagofwords.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects objects from any number of threads and inserts them in batches on a background thread. Every batch is
+ * inserted and committed in a single transaction. A batch is written as soon as it is full, or when the oldest pending
+ * object has waited for the flush interval.
+ * <p>
+ * Objects are only written eventually: they are lost if the JVM stops before the queue is closed. Use
+ * {@link DatabaseService#insertObjects(List)} when a write needs to be durable before returning.
+ * <p>
+ * A batch that fails because the database can not be reached is retried database.writeBehindMaxRetries times, waiting
+ * database.writeBehindRetryBackoffMs before the first retry and twice as long before every next retry. New objects are
+ * queued in the meantime, up to the capacity of the queue. A batch that still fails, or fails for another reason, is
+ * passed to the {@link #setFailureHandler(BiConsumer) failure handler}, or logged if there is none. A batch that failed
+ * while committing could have been written anyway, so a retry can write the same objects twice.
+ */
+public class WriteBehindQueue<T> implements AutoCloseable {
+
+    private final DatabaseService databaseService;
+    private final Class<T> _class;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int capacity;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong numOfWritten = new AtomicLong();
+    private final AtomicLong numOfFailed = new AtomicLong();
+    /**
+     * Producers hold the read lock while adding an object, so an object can not be added after the final flush of
+     * {@link #close()}
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private final Thread flusher;
+    private volatile BiConsumer<List<T>, Throwable> failureHandler;
+    private volatile boolean closed;
+
+    WriteBehindQueue(DatabaseService databaseService, Class<T> _class, int batchSize, long flushIntervalMs, int capacity, int maxRetries, long retryBackoffMs) {
+        this.databaseService = databaseService;
+        this._class = _class;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.capacity = capacity;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMs = retryBackoffMs;
+        this.flusher = new Thread(this::flushContinuously, "mini-orm-write-behind-" + _class.getSimpleName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * @return false if the queue is full (the database can not keep up) or closed. The object is not written in that case.
+     */
+    public boolean offer(T object) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            //Reserve a place first, so concurrent producers can not exceed the capacity
+            int newSize = size.incrementAndGet();
+            if (newSize > capacity) {
+                size.decrementAndGet();
+                return false;
+            }
+            queue.add(object);
+            if (newSize == batchSize) {
+                LockSupport.unpark(flusher);
+            }
+            return true;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param failureHandler receives every batch that could not be written together with the last failure, on the thread
+     *                       that writes the batches. The objects in the batch are no longer queued.
+     */
+    public void setFailureHandler(BiConsumer<List<T>, Throwable> failureHandler) {
+        this.failureHandler = failureHandler;
+    }
+
+    public int getNumOfPending() {
+        return size.get();
+    }
+
+    public long getNumOfWritten() {
+        return numOfWritten.get();
+    }
+
+    public long getNumOfFailed() {
+        return numOfFailed.get();
+    }
+
+    /**
+     * Writes all objects that are currently queued on the calling thread
+     */
+    public void flush() {
+        synchronized (this) {
+            while (!queue.isEmpty()) {
+                writeBatch();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting new objects, and writes all objects that are still queued
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void flushContinuously() {
+        while (!closed) {
+            long waitUntil = System.nanoTime() + flushIntervalNanos;
+            while (!closed && size.get() < batchSize) {
+                long remaining = waitUntil - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            synchronized (this) {
+                while (size.get() >= batchSize || (!queue.isEmpty() && System.nanoTime() >= waitUntil)) {
+                    writeBatch();
+                }
+            }
+        }
+    }
+
+    private void writeBatch() {
+        List<T> batch = new ArrayList<>(Math.min(batchSize, size.get()));
+        T object;
+        while (batch.size() < batchSize && (object = queue.poll()) != null) {
+            batch.add(object);
+        }
+        size.addAndGet(-batch.size());
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                databaseService.insertObjects(batch);
+                numOfWritten.addAndGet(batch.size());
+                return;
+            } catch (Throwable t) {
+                if (attempt < maxRetries && DatabaseService.isConnectionFailure(t)) {
+                    long backoffMs = retryBackoffMs << Math.min(attempt, 20);
+                    Log.e("Failed to write " + batch.size() + " objects of " + _class + " from the write-behind queue, retrying in " + backoffMs + "ms", t);
+                    //Offering objects or closing the queue unparks this thread, keep waiting until the backoff has passed
+                    long retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+                    long remaining;
+                    while ((remaining = retryAt - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(this, remaining);
+                    }
+                } else {
+                    numOfFailed.addAndGet(batch.size());
+                    handleFailure(batch, t);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handleFailure(List<T> batch, Throwable t) {
+        BiConsumer<List<T>, Throwable> handler = failureHandler;
+        if (handler == null) {
+            Log.e("Failed to write " + batch.size() + " objects of " + _class + " from the write-behind queue", t);
+            return;
+        }
+        try {
+            handler.accept(batch, t);
+        } catch (Throwable handlerFailure) {
+            Log.e("Failure handler of the write-behind queue of " + _class + " failed for " + batch.size() + " objects", handlerFailure);
+        }
+    }
+}
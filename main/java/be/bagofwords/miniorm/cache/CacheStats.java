@@ -0,0 +1,25 @@
+package be.bagofwords.miniorm.cache;
+
+public class CacheStats {
+    public final long hits;
+    public final long misses;
+    public final long evictions;
+    public final int size;
+
+    public CacheStats(long hits, long misses, long evictions, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : hits / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + " misses=" + misses + " evictions=" + evictions + " size=" + size;
+    }
+}
@@ -0,0 +1,97 @@
+package be.bagofwords.miniorm.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Column values of objects by id, evicted in least recently used order and after a fixed time to live. Values are stored
+ * instead of objects, so callers can never change a cached entry by changing the object they received.
+ * <p>
+ * Every invalidation increments a generation counter. A reader takes the generation before querying the database and
+ * only stores the values it read if no invalidation happened in the meantime, so values that were read before a
+ * concurrent write can not end up in the cache after that write.
+ */
+public class EntityCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long generation;
+
+    public EntityCache(int maxSize, long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * @return the cached column values, or null if this id is not cached or has expired
+     */
+    public Object[] get(long id) {
+        Object[] values = null;
+        synchronized (this) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (System.nanoTime() - entry.created < ttlNanos) {
+                    values = entry.values;
+                } else {
+                    entries.remove(id);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+        (values == null ? misses : hits).incrementAndGet();
+        return values;
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Stores the values of this id, unless the cache was invalidated after the given generation was read
+     */
+    public synchronized void put(long id, Object[] values, long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        entries.put(id, new Entry(values, System.nanoTime()));
+        if (entries.size() > maxSize) {
+            Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxSize) {
+                iterator.next();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void invalidate(long id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits.get(), misses.get(), evictions.get(), entries.size());
+    }
+
+    private static class Entry {
+        private final Object[] values;
+        private final long created;
+
+        private Entry(Object[] values, long created) {
+            this.values = values;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package be.bagofwords.miniorm.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results of queries by table, statement and arguments. Every table has a version that is incremented when it is written.
+ * A result is stored with the version of its table from before the query was executed, and is only returned while that
+ * version is still current, so a write to a table invalidates all of its results without having to find them.
+ * <p>
+ * Results are stored as lists of column values that are never modified, so they can be shared between threads. The
+ * cache is bounded by the total number of rows it holds and by an estimate of the memory they take, evicting the least
+ * recently used results first. The estimate assumes a 64-bit JVM with compressed references, and two bytes per character
+ * of a string. Values of other types than the ones supported by the column codecs are counted as a small object.
+ */
+public class QueryCache {
+
+    private final long maxRows;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long numOfRows;
+    private long numOfBytes;
+
+    /**
+     * @param maxBytes bound on the estimated memory of all cached rows
+     */
+    public QueryCache(long maxRows, long maxBytes) {
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the version of this table, to be passed to {@link #put(String, String, Object[], List, long)}
+     */
+    public long getVersion(String table) {
+        return getTableVersion(table).get();
+    }
+
+    /**
+     * @return the rows of this query, or null if it is not cached or the table was written since it was cached
+     */
+    public List<Object[]> get(String table, String sql, Object[] args) {
+        Key key = new Key(table, sql, args);
+        long version = getVersion(table);
+        List<Object[]> rows = null;
+        synchronized (this) {
+            Result result = results.get(key);
+            if (result != null) {
+                if (result.version == version) {
+                    rows = result.rows;
+                } else {
+                    remove(key);
+                }
+            }
+        }
+        (rows == null ? misses : hits).incrementAndGet();
+        return rows;
+    }
+
+    /**
+     * @param version the version of the table before the query was executed
+     */
+    public void put(String table, String sql, Object[] args, List<Object[]> rows, long version) {
+        if (rows.size() > maxRows || version != getVersion(table)) {
+            return;
+        }
+        long bytes = estimateBytes(rows);
+        if (bytes > maxBytes) {
+            return;
+        }
+        Key key = new Key(table, sql, args);
+        synchronized (this) {
+            remove(key);
+            results.put(key, new Result(Collections.unmodifiableList(rows), version, bytes));
+            numOfRows += rows.size();
+            numOfBytes += bytes;
+            Iterator<Result> iterator = results.values().iterator();
+            while (numOfRows > maxRows || numOfBytes > maxBytes) {
+                Result evicted = iterator.next();
+                numOfRows -= evicted.rows.size();
+                numOfBytes -= evicted.bytes;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public void invalidate(String table) {
+        getTableVersion(table).incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        for (AtomicLong version : tableVersions.values()) {
+            version.incrementAndGet();
+        }
+        synchronized (this) {
+            results.clear();
+            numOfRows = 0;
+            numOfBytes = 0;
+        }
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits.get(), misses.get(), evictions.get(), results.size());
+    }
+
+    private void remove(Key key) {
+        Result removed = results.remove(key);
+        if (removed != null) {
+            numOfRows -= removed.rows.size();
+            numOfBytes -= removed.bytes;
+        }
+    }
+
+    private static long estimateBytes(List<Object[]> rows) {
+        //The list itself
+        long bytes = 24 + 4L * rows.size();
+        for (Object[] row : rows) {
+            bytes += 16 + 4L * row.length;
+            for (Object value : row) {
+                bytes += estimateBytes(value);
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimateBytes(Object value) {
+        if (value == null || value instanceof Enum || value instanceof Boolean) {
+            //Shared instances
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else {
+            return 24;
+        }
+    }
+
+    private AtomicLong getTableVersion(String table) {
+        AtomicLong version = tableVersions.get(table);
+        if (version == null) {
+            version = tableVersions.computeIfAbsent(table, t -> new AtomicLong());
+        }
+        return version;
+    }
+
+    private static class Key {
+        private final String table;
+        private final String sql;
+        private final Object[] args;
+        private final int hash;
+
+        private Key(String table, String sql, Object[] args) {
+            this.table = table;
+            this.sql = sql;
+            this.args = args == null ? new Object[0] : args.clone();
+            this.hash = 31 * (31 * table.hashCode() + sql.hashCode()) + Arrays.deepHashCode(this.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && table.equals(key.table) && sql.equals(key.sql) && Arrays.deepEquals(args, key.args);
+        }
+    }
+
+    private static class Result {
+        private final List<Object[]> rows;
+        private final long version;
+        private final long bytes;
+
+        private Result(List<Object[]> rows, long version, long bytes) {
+            this.rows = rows;
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+}
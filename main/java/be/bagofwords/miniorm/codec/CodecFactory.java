@@ -0,0 +1,16 @@
+package be.bagofwords.miniorm.codec;
+
+import java.lang.reflect.Field;
+
+/**
+ * Creates codecs for families of types (e.g. all enums) that can not be registered one class at a time.
+ */
+public interface CodecFactory {
+
+    /**
+     * @param field the field that is mapped, or null when a codec is needed for a query argument
+     * @return a codec for this type, or null if this factory does not support the type
+     */
+    ColumnCodec<?> createCodec(Class<?> type, Field field);
+
+}
@@ -0,0 +1,47 @@
+package be.bagofwords.miniorm.codec;
+
+import be.bagofwords.miniorm.mapping.FieldAccessor;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converts the values of one java type to and from a column. Codecs are resolved once per column when the mapping of an
+ * entity is built, so writing or reading a value is a single virtual call.
+ */
+public interface ColumnCodec<T> {
+
+    int getSqlType();
+
+    /**
+     * @param value never null, null values are written with {@link PreparedStatement#setNull(int, int)}
+     */
+    void write(PreparedStatement statement, int ind, T value) throws SQLException;
+
+    T read(ResultSet resultSet, int ind) throws SQLException;
+
+    default void writeValue(PreparedStatement statement, int ind, Object value) throws SQLException {
+        if (value == null) {
+            statement.setNull(ind, getSqlType());
+        } else {
+            write(statement, ind, (T) value);
+        }
+    }
+
+    /**
+     * Writes the value of a field of the source object. Codecs of primitive types override this to avoid boxing.
+     */
+    default void writeFrom(PreparedStatement statement, int ind, Object source, FieldAccessor accessor) throws SQLException {
+        writeValue(statement, ind, accessor.get(source));
+    }
+
+    /**
+     * Reads the column straight into a field of the target object. Codecs of primitive types override this to avoid
+     * boxing.
+     */
+    default void readInto(ResultSet resultSet, int ind, Object target, FieldAccessor accessor) throws SQLException {
+        accessor.set(target, read(resultSet, ind));
+    }
+
+}
@@ -0,0 +1,111 @@
+package be.bagofwords.miniorm.codec;
+
+import be.bagofwords.miniorm.EnumOrdinal;
+
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+public class EnumCodecs implements CodecFactory {
+
+    @Override
+    public ColumnCodec<?> createCodec(Class<?> type, Field field) {
+        Class<? extends Enum> enumType = getEnumType(type);
+        if (enumType == null) {
+            return null;
+        }
+        if (field != null && field.isAnnotationPresent(EnumOrdinal.class)) {
+            return new EnumOrdinalCodec(enumType);
+        } else {
+            return new EnumNameCodec(enumType);
+        }
+    }
+
+    private Class<? extends Enum> getEnumType(Class<?> type) {
+        if (type.isEnum()) {
+            return (Class<? extends Enum>) type;
+        } else if (type.getSuperclass() != null && type.getSuperclass().isEnum()) {
+            //Constants with a body are anonymous subclasses of their enum
+            return (Class<? extends Enum>) type.getSuperclass();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the name of the constant. The constants are looked up in a map that is built once, instead of calling
+     * {@link Enum#valueOf(Class, String)} for every value.
+     */
+    public static class EnumNameCodec implements ColumnCodec<Enum> {
+
+        private final Class<? extends Enum> type;
+        private final Map<String, Enum> constants = new HashMap<>();
+
+        public EnumNameCodec(Class<? extends Enum> type) {
+            this.type = type;
+            for (Enum constant : type.getEnumConstants()) {
+                constants.put(constant.name(), constant);
+            }
+        }
+
+        @Override
+        public int getSqlType() {
+            return Types.VARCHAR;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, Enum value) throws SQLException {
+            statement.setString(ind, value.name());
+        }
+
+        @Override
+        public Enum read(ResultSet resultSet, int ind) throws SQLException {
+            String name = resultSet.getString(ind);
+            if (name == null) {
+                return null;
+            }
+            Enum constant = constants.get(name);
+            if (constant == null) {
+                throw new IllegalArgumentException("No enum constant " + type.getCanonicalName() + "." + name);
+            }
+            return constant;
+        }
+    }
+
+    public static class EnumOrdinalCodec implements ColumnCodec<Enum> {
+
+        private final Class<? extends Enum> type;
+        private final Enum[] constants;
+
+        public EnumOrdinalCodec(Class<? extends Enum> type) {
+            this.type = type;
+            this.constants = type.getEnumConstants();
+        }
+
+        @Override
+        public int getSqlType() {
+            return Types.INTEGER;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, Enum value) throws SQLException {
+            statement.setInt(ind, value.ordinal());
+        }
+
+        @Override
+        public Enum read(ResultSet resultSet, int ind) throws SQLException {
+            int ordinal = resultSet.getInt(ind);
+            if (resultSet.wasNull()) {
+                return null;
+            }
+            if (ordinal < 0 || ordinal >= constants.length) {
+                throw new IllegalArgumentException("No enum constant of " + type.getCanonicalName() + " with ordinal " + ordinal);
+            }
+            return constants[ordinal];
+        }
+    }
+}
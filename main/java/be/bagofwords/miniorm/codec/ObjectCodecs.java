@@ -0,0 +1,155 @@
+package be.bagofwords.miniorm.codec;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.UUID;
+
+public class ObjectCodecs {
+
+    public static class StringCodec implements ColumnCodec<String> {
+        @Override
+        public int getSqlType() {
+            return Types.VARCHAR;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, String value) throws SQLException {
+            statement.setString(ind, value);
+        }
+
+        @Override
+        public String read(ResultSet resultSet, int ind) throws SQLException {
+            return resultSet.getString(ind);
+        }
+    }
+
+    public static class DateCodec implements ColumnCodec<Date> {
+        @Override
+        public int getSqlType() {
+            return Types.TIMESTAMP;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, Date value) throws SQLException {
+            statement.setTimestamp(ind, new Timestamp(value.getTime()));
+        }
+
+        @Override
+        public Date read(ResultSet resultSet, int ind) throws SQLException {
+            Timestamp timestamp = resultSet.getTimestamp(ind);
+            if (timestamp == null) {
+                return null;
+            } else {
+                return new Date(timestamp.getTime());
+            }
+        }
+    }
+
+    public static class InstantCodec implements ColumnCodec<Instant> {
+        @Override
+        public int getSqlType() {
+            return Types.TIMESTAMP;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, Instant value) throws SQLException {
+            statement.setTimestamp(ind, Timestamp.from(value));
+        }
+
+        @Override
+        public Instant read(ResultSet resultSet, int ind) throws SQLException {
+            Timestamp timestamp = resultSet.getTimestamp(ind);
+            return timestamp == null ? null : timestamp.toInstant();
+        }
+    }
+
+    public static class LocalDateTimeCodec implements ColumnCodec<LocalDateTime> {
+        @Override
+        public int getSqlType() {
+            return Types.TIMESTAMP;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, LocalDateTime value) throws SQLException {
+            statement.setTimestamp(ind, Timestamp.valueOf(value));
+        }
+
+        @Override
+        public LocalDateTime read(ResultSet resultSet, int ind) throws SQLException {
+            Timestamp timestamp = resultSet.getTimestamp(ind);
+            return timestamp == null ? null : timestamp.toLocalDateTime();
+        }
+    }
+
+    public static class ByteArrayCodec implements ColumnCodec<byte[]> {
+        @Override
+        public int getSqlType() {
+            return Types.VARBINARY;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, byte[] value) throws SQLException {
+            statement.setBytes(ind, value);
+        }
+
+        @Override
+        public byte[] read(ResultSet resultSet, int ind) throws SQLException {
+            return resultSet.getBytes(ind);
+        }
+    }
+
+    public static class BigDecimalCodec implements ColumnCodec<BigDecimal> {
+        @Override
+        public int getSqlType() {
+            return Types.DECIMAL;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, BigDecimal value) throws SQLException {
+            statement.setBigDecimal(ind, value);
+        }
+
+        @Override
+        public BigDecimal read(ResultSet resultSet, int ind) throws SQLException {
+            return resultSet.getBigDecimal(ind);
+        }
+    }
+
+    /**
+     * Stores a UUID in a binary(16) column: most significant bits first, so values keep their natural sort order.
+     */
+    public static class UuidCodec implements ColumnCodec<UUID> {
+        @Override
+        public int getSqlType() {
+            return Types.BINARY;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, UUID value) throws SQLException {
+            byte[] bytes = new byte[16];
+            ByteBuffer.wrap(bytes).putLong(value.getMostSignificantBits()).putLong(value.getLeastSignificantBits());
+            statement.setBytes(ind, bytes);
+        }
+
+        @Override
+        public UUID read(ResultSet resultSet, int ind) throws SQLException {
+            byte[] bytes = resultSet.getBytes(ind);
+            if (bytes == null) {
+                return null;
+            }
+            if (bytes.length != 16) {
+                throw new SQLException("Expected 16 bytes for UUID in column " + ind + " but got " + bytes.length);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+    }
+}
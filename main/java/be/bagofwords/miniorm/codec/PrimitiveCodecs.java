@@ -0,0 +1,131 @@
+package be.bagofwords.miniorm.codec;
+
+import be.bagofwords.miniorm.mapping.FieldAccessor;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Codecs for int, long, double and boolean. The boxed variants are used for fields of the wrapper types, the primitive
+ * variants move values between the statement and the field without boxing.
+ */
+public class PrimitiveCodecs {
+
+    public static class IntCodec implements ColumnCodec<Integer> {
+        @Override
+        public int getSqlType() {
+            return Types.INTEGER;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, Integer value) throws SQLException {
+            statement.setInt(ind, value);
+        }
+
+        @Override
+        public Integer read(ResultSet resultSet, int ind) throws SQLException {
+            return resultSet.getInt(ind);
+        }
+    }
+
+    public static class PrimitiveIntCodec extends IntCodec {
+        @Override
+        public void writeFrom(PreparedStatement statement, int ind, Object source, FieldAccessor accessor) throws SQLException {
+            statement.setInt(ind, accessor.getInt(source));
+        }
+
+        @Override
+        public void readInto(ResultSet resultSet, int ind, Object target, FieldAccessor accessor) throws SQLException {
+            accessor.setInt(target, resultSet.getInt(ind));
+        }
+    }
+
+    public static class LongCodec implements ColumnCodec<Long> {
+        @Override
+        public int getSqlType() {
+            return Types.BIGINT;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, Long value) throws SQLException {
+            statement.setLong(ind, value);
+        }
+
+        @Override
+        public Long read(ResultSet resultSet, int ind) throws SQLException {
+            return resultSet.getLong(ind);
+        }
+    }
+
+    public static class PrimitiveLongCodec extends LongCodec {
+        @Override
+        public void writeFrom(PreparedStatement statement, int ind, Object source, FieldAccessor accessor) throws SQLException {
+            statement.setLong(ind, accessor.getLong(source));
+        }
+
+        @Override
+        public void readInto(ResultSet resultSet, int ind, Object target, FieldAccessor accessor) throws SQLException {
+            accessor.setLong(target, resultSet.getLong(ind));
+        }
+    }
+
+    public static class DoubleCodec implements ColumnCodec<Double> {
+        @Override
+        public int getSqlType() {
+            return Types.DOUBLE;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, Double value) throws SQLException {
+            statement.setDouble(ind, value);
+        }
+
+        @Override
+        public Double read(ResultSet resultSet, int ind) throws SQLException {
+            return resultSet.getDouble(ind);
+        }
+    }
+
+    public static class PrimitiveDoubleCodec extends DoubleCodec {
+        @Override
+        public void writeFrom(PreparedStatement statement, int ind, Object source, FieldAccessor accessor) throws SQLException {
+            statement.setDouble(ind, accessor.getDouble(source));
+        }
+
+        @Override
+        public void readInto(ResultSet resultSet, int ind, Object target, FieldAccessor accessor) throws SQLException {
+            accessor.setDouble(target, resultSet.getDouble(ind));
+        }
+    }
+
+    public static class BooleanCodec implements ColumnCodec<Boolean> {
+        @Override
+        public int getSqlType() {
+            return Types.BOOLEAN;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int ind, Boolean value) throws SQLException {
+            statement.setBoolean(ind, value);
+        }
+
+        @Override
+        public Boolean read(ResultSet resultSet, int ind) throws SQLException {
+            return resultSet.getBoolean(ind);
+        }
+    }
+
+    public static class PrimitiveBooleanCodec extends BooleanCodec {
+        @Override
+        public void writeFrom(PreparedStatement statement, int ind, Object source, FieldAccessor accessor) throws SQLException {
+            statement.setBoolean(ind, accessor.getBoolean(source));
+        }
+
+        @Override
+        public void readInto(ResultSet resultSet, int ind, Object target, FieldAccessor accessor) throws SQLException {
+            accessor.setBoolean(target, resultSet.getBoolean(ind));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package be.bagofwords.miniorm.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+/**
+ * The values of one column of a {@link ColumnBatch}, stored in a primitive array that grows as rows are read. Null values
+ * are stored as 0 and marked in a separate bit set.
+ */
+public abstract class Column {
+
+    static final int INITIAL_CAPACITY = 1024;
+
+    private final String name;
+    private final BitSet nulls = new BitSet();
+    protected int size;
+
+    protected Column(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    public boolean hasNulls() {
+        return !nulls.isEmpty();
+    }
+
+    /**
+     * Appends the value of the current row of the result set.
+     */
+    void read(ResultSet resultSet, int ind) throws SQLException {
+        readValue(resultSet, ind);
+        if (resultSet.wasNull()) {
+            nulls.set(size);
+        }
+        size++;
+    }
+
+    /**
+     * Stores the value of the current row at index {@link #size}, growing the array if needed.
+     */
+    protected abstract void readValue(ResultSet resultSet, int ind) throws SQLException;
+
+    /**
+     * Removes all values but keeps the arrays, so the next batch does not allocate.
+     */
+    void clear() {
+        nulls.clear();
+        size = 0;
+    }
+
+    static int grow(int capacity) {
+        return Math.max(INITIAL_CAPACITY, capacity * 2);
+    }
+}
@@ -0,0 +1,117 @@
+package be.bagofwords.miniorm.columnar;
+
+import be.bagofwords.miniorm.EnumOrdinal;
+import be.bagofwords.miniorm.mapping.ColumnMapping;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rows read column by column into primitive arrays, without creating an object or boxing a value per row. Numeric
+ * columns are stored as long, int or double, strings and enums are dictionary encoded.
+ */
+public class ColumnBatch {
+
+    private final List<Column> columns;
+    private int size;
+
+    private ColumnBatch(List<Column> columns) {
+        this.columns = Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * @param mappings the columns to read, in the order of the result set
+     */
+    public static ColumnBatch create(List<ColumnMapping> mappings) {
+        List<Column> columns = new ArrayList<>();
+        for (ColumnMapping mapping : mappings) {
+            columns.add(createColumn(mapping));
+        }
+        return new ColumnBatch(columns);
+    }
+
+    private static Column createColumn(ColumnMapping mapping) {
+        Class<?> type = mapping.type;
+        if (type == long.class || type == Long.class) {
+            return new LongColumn(mapping.name);
+        } else if (type == int.class || type == Integer.class || type == short.class || type == Short.class || type == byte.class || type == Byte.class) {
+            return new IntColumn(mapping.name);
+        } else if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+            return new DoubleColumn(mapping.name);
+        } else if (type == String.class) {
+            return new DictionaryColumn(mapping.name);
+        } else if (type.isEnum()) {
+            return new EnumColumn(mapping.name, type, mapping.field.isAnnotationPresent(EnumOrdinal.class));
+        } else {
+            throw new IllegalArgumentException("Can not read column " + mapping.name + " of type " + type + " into a column batch, supported are numeric, string and enum columns");
+        }
+    }
+
+    /**
+     * Appends the current row of the result set.
+     */
+    public void readRow(ResultSet resultSet) throws SQLException {
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).read(resultSet, i + 1);
+        }
+        size++;
+    }
+
+    /**
+     * Removes all rows but keeps the arrays and dictionaries, so the batch can be reused to read the next rows.
+     */
+    public void clear() {
+        for (Column column : columns) {
+            column.clear();
+        }
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public Column getColumn(String name) {
+        for (Column column : columns) {
+            if (column.getName().equals(name)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException("No column " + name + " in this batch");
+    }
+
+    public LongColumn getLongColumn(String name) {
+        return getColumn(name, LongColumn.class);
+    }
+
+    public IntColumn getIntColumn(String name) {
+        return getColumn(name, IntColumn.class);
+    }
+
+    public DoubleColumn getDoubleColumn(String name) {
+        return getColumn(name, DoubleColumn.class);
+    }
+
+    public DictionaryColumn getDictionaryColumn(String name) {
+        return getColumn(name, DictionaryColumn.class);
+    }
+
+    public <E extends Enum<E>> EnumColumn<E> getEnumColumn(String name) {
+        return getColumn(name, EnumColumn.class);
+    }
+
+    private <C extends Column> C getColumn(String name, Class<C> columnClass) {
+        Column column = getColumn(name);
+        if (!columnClass.isInstance(column)) {
+            throw new IllegalArgumentException("Column " + name + " is a " + column.getClass().getSimpleName() + ", not a " + columnClass.getSimpleName());
+        }
+        return columnClass.cast(column);
+    }
+}
@@ -0,0 +1,109 @@
+package be.bagofwords.miniorm.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores every distinct string once, and the code of the string for every row. The dictionary is kept when the batch is
+ * cleared, so codes are stable over all batches of a read and can be used directly as keys when aggregating.
+ */
+public class DictionaryColumn extends Column {
+
+    public static final int NULL_CODE = -1;
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> codesByValue = new HashMap<>();
+    private int[] codes = new int[INITIAL_CAPACITY];
+
+    public DictionaryColumn(String name) {
+        super(name);
+    }
+
+    protected DictionaryColumn(String name, List<String> dictionary) {
+        this(name);
+        for (String value : dictionary) {
+            addToDictionary(value);
+        }
+    }
+
+    /**
+     * @return the code of the value in this row, or {@link #NULL_CODE} if the value is null
+     */
+    public int getCode(int row) {
+        return codes[row];
+    }
+
+    /**
+     * @return the backing array of codes, only the first {@link #size()} codes are valid
+     */
+    public int[] getCodes() {
+        return codes;
+    }
+
+    /**
+     * @return the code of this value, or {@link #NULL_CODE} if the value does not occur in the rows read so far. Useful to
+     * filter on a value by comparing codes instead of strings.
+     */
+    public int getCode(String value) {
+        Integer code = codesByValue.get(value);
+        return code == null ? NULL_CODE : code;
+    }
+
+    public String get(int row) {
+        int code = codes[row];
+        return code == NULL_CODE ? null : dictionary.get(code);
+    }
+
+    /**
+     * @return the distinct values, the code of a value is its index in this list
+     */
+    public List<String> getDictionary() {
+        return Collections.unmodifiableList(dictionary);
+    }
+
+    /**
+     * @return the number of rows per code, indexed by code
+     */
+    public int[] countByCode() {
+        int[] counts = new int[dictionary.size()];
+        for (int i = 0; i < size; i++) {
+            if (codes[i] != NULL_CODE) {
+                counts[codes[i]]++;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    protected void readValue(ResultSet resultSet, int ind) throws SQLException {
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, grow(codes.length));
+        }
+        codes[size] = readCode(resultSet, ind);
+    }
+
+    protected int readCode(ResultSet resultSet, int ind) throws SQLException {
+        String value = resultSet.getString(ind);
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codesByValue.get(value);
+        if (code == null) {
+            code = addToDictionary(value);
+        }
+        return code;
+    }
+
+    private int addToDictionary(String value) {
+        int code = dictionary.size();
+        dictionary.add(value);
+        codesByValue.put(value, code);
+        return code;
+    }
+}
@@ -0,0 +1,41 @@
+package be.bagofwords.miniorm.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class DoubleColumn extends Column {
+
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    public DoubleColumn(String name) {
+        super(name);
+    }
+
+    public double get(int row) {
+        return values[row];
+    }
+
+    /**
+     * @return the backing array, only the first {@link #size()} values are valid
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    protected void readValue(ResultSet resultSet, int ind) throws SQLException {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        values[size] = resultSet.getDouble(ind);
+    }
+}
@@ -0,0 +1,58 @@
+package be.bagofwords.miniorm.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A dictionary column with a fixed dictionary: the code of a constant is its ordinal. Reads columns stored as names as
+ * well as columns stored as ordinals (see {@link be.bagofwords.miniorm.EnumOrdinal}).
+ */
+public class EnumColumn<E extends Enum<E>> extends DictionaryColumn {
+
+    private final E[] constants;
+    private final boolean storedAsOrdinal;
+
+    public EnumColumn(String name, Class<E> type, boolean storedAsOrdinal) {
+        super(name, names(type));
+        this.constants = type.getEnumConstants();
+        this.storedAsOrdinal = storedAsOrdinal;
+    }
+
+    public E getConstant(int row) {
+        int code = getCode(row);
+        return code == NULL_CODE ? null : constants[code];
+    }
+
+    @Override
+    protected int readCode(ResultSet resultSet, int ind) throws SQLException {
+        if (storedAsOrdinal) {
+            int ordinal = resultSet.getInt(ind);
+            if (resultSet.wasNull()) {
+                return NULL_CODE;
+            }
+            if (ordinal < 0 || ordinal >= constants.length) {
+                throw new IllegalArgumentException("No enum constant of " + constants.getClass().getComponentType().getCanonicalName() + " with ordinal " + ordinal);
+            }
+            return ordinal;
+        }
+        String name = resultSet.getString(ind);
+        if (name == null) {
+            return NULL_CODE;
+        }
+        int code = getCode(name);
+        if (code == NULL_CODE) {
+            throw new IllegalArgumentException("No enum constant " + constants.getClass().getComponentType().getCanonicalName() + "." + name);
+        }
+        return code;
+    }
+
+    private static List<String> names(Class<? extends Enum> type) {
+        List<String> names = new ArrayList<>();
+        for (Enum constant : type.getEnumConstants()) {
+            names.add(constant.name());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,41 @@
+package be.bagofwords.miniorm.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class IntColumn extends Column {
+
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    public IntColumn(String name) {
+        super(name);
+    }
+
+    public int get(int row) {
+        return values[row];
+    }
+
+    /**
+     * @return the backing array, only the first {@link #size()} values are valid
+     */
+    public int[] getValues() {
+        return values;
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    protected void readValue(ResultSet resultSet, int ind) throws SQLException {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        values[size] = resultSet.getInt(ind);
+    }
+}
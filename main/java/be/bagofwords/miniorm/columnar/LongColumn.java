@@ -0,0 +1,41 @@
+package be.bagofwords.miniorm.columnar;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class LongColumn extends Column {
+
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    public LongColumn(String name) {
+        super(name);
+    }
+
+    public long get(int row) {
+        return values[row];
+    }
+
+    /**
+     * @return the backing array, only the first {@link #size()} values are valid
+     */
+    public long[] getValues() {
+        return values;
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    protected void readValue(ResultSet resultSet, int ind) throws SQLException {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(values.length));
+        }
+        values[size] = resultSet.getLong(ind);
+    }
+}
@@ -1,12 +1,22 @@
 package be.bagofwords.miniorm.data;
 
 public enum DatabaseType {
-    MYSQL("mysql"), H2("h2"), ORACLE("oracle"), MSSQL("sqlserver"), OTHER(null);
+    MYSQL("mysql", 65_535, Integer.MAX_VALUE), H2("h2", 65_535, Integer.MAX_VALUE), ORACLE("oracle", 65_535, 0), MSSQL("sqlserver", 2_100, 1_000), OTHER(null, 2_100, 0);
 
     public final String jdbcType;
+    /**
+     * Maximum number of placeholders in a single statement
+     */
+    public final int maxParameters;
+    /**
+     * Maximum number of rows in a single insert ... values (...),(...) statement, 0 if these statements are not supported
+     */
+    public final int maxRowsPerInsert;
 
-    DatabaseType(String jdbcType) {
+    DatabaseType(String jdbcType, int maxParameters, int maxRowsPerInsert) {
         this.jdbcType = jdbcType;
+        this.maxParameters = maxParameters;
+        this.maxRowsPerInsert = maxRowsPerInsert;
     }
 
     public static DatabaseType fromJdbUrl(String jdbcUrl) {
@@ -0,0 +1,13 @@
+package be.bagofwords.miniorm.data;
+
+public enum InsertMode {
+    /**
+     * One insert statement per object, sent to the database with JDBC batching
+     */
+    BATCH,
+    /**
+     * Multi-row insert ... values (...),(...) statements, sized to the placeholder and packet limits of the database. Falls
+     * back to {@link #BATCH} for databases that do not support these statements.
+     */
+    MULTI_ROW
+}
@@ -0,0 +1,20 @@
+package be.bagofwords.miniorm.data;
+
+import java.sql.Connection;
+
+public enum IsolationLevel {
+    /**
+     * Keep the isolation level of the connection, which is the default of the database
+     */
+    DEFAULT(-1),
+    READ_UNCOMMITTED(Connection.TRANSACTION_READ_UNCOMMITTED),
+    READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED),
+    REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ),
+    SERIALIZABLE(Connection.TRANSACTION_SERIALIZABLE);
+
+    public final int jdbcLevel;
+
+    IsolationLevel(int jdbcLevel) {
+        this.jdbcLevel = jdbcLevel;
+    }
+}
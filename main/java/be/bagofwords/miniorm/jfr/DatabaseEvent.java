@@ -0,0 +1,32 @@
+package be.bagofwords.miniorm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Timespan;
+
+/**
+ * Fields shared by the events of operations on a single entity
+ */
+@Category("mini-orm")
+abstract class DatabaseEvent extends Event {
+
+    @Label("Entity Class")
+    Class<?> entityClass;
+
+    @Label("Table")
+    String table;
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Waited On Pool")
+    boolean waitedOnPool;
+
+    @Label("Pool Wait")
+    @Timespan
+    long poolWait;
+}
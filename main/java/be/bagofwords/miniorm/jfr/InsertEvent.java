@@ -0,0 +1,9 @@
+package be.bagofwords.miniorm.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("be.bagofwords.miniorm.Insert")
+@Label("Insert Objects")
+class InsertEvent extends DatabaseEvent {
+}
@@ -0,0 +1,9 @@
+package be.bagofwords.miniorm.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("be.bagofwords.miniorm.Iterate")
+@Label("Iterate Batch")
+class IterateEvent extends DatabaseEvent {
+}
@@ -0,0 +1,173 @@
+package be.bagofwords.miniorm.jfr;
+
+import be.bagofwords.miniorm.mapping.EntityMapping;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emits JDK Flight Recorder events for database operations. The events are enabled and configured with the standard JFR
+ * settings, e.g. {@code be.bagofwords.miniorm.Read#threshold=10 ms}. Events are returned as plain objects, so this class
+ * can be used on JVMs without JFR, in which case every method does nothing.
+ * <p>
+ * An operation waited on the pool if checking out its connection took more than 1ms.
+ */
+public class JfrEvents {
+
+    public enum Kind {
+        READ, ITERATE, INSERT, UPDATE, UPSERT, DELETE
+    }
+
+    private static final long POOL_WAIT_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final boolean AVAILABLE = isAvailable();
+
+    private JfrEvents() {
+    }
+
+    /**
+     * @return true if flight recorder was started in this JVM. Checking out connections is only timed in that case.
+     */
+    public static boolean isRecording() {
+        return AVAILABLE && Recorder.isRecording();
+    }
+
+    /**
+     * Remembers how long the current thread waited for its connection, for the events of the operations that follow
+     */
+    public static void recordCheckout(long waitNanos) {
+        if (AVAILABLE) {
+            Recorder.lastPoolWait.get()[0] = waitNanos;
+        }
+    }
+
+    /**
+     * @return the started event, or null if events of this kind are not enabled
+     */
+    public static Object begin(Kind kind) {
+        return AVAILABLE ? Recorder.begin(kind) : null;
+    }
+
+    public static void commit(Object event, EntityMapping<?> mapping, String sql, long rows) {
+        if (event != null) {
+            Recorder.commit((DatabaseEvent) event, mapping, sql, rows);
+        }
+    }
+
+    public static Object beginTransaction() {
+        return AVAILABLE ? Recorder.beginTransaction() : null;
+    }
+
+    public static void commitTransaction(Object event, boolean committed) {
+        if (event != null) {
+            Recorder.commitTransaction((TransactionEvent) event, committed);
+        }
+    }
+
+    public static Object beginMigration() {
+        return AVAILABLE ? Recorder.beginMigration() : null;
+    }
+
+    public static void commitMigration(Object event, String id, String description) {
+        if (event != null) {
+            Recorder.commitMigration((MigrationEvent) event, id, description);
+        }
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Only loaded when JFR is available, this is the only class that refers to the event classes
+     */
+    private static class Recorder {
+
+        private static final ThreadLocal<long[]> lastPoolWait = ThreadLocal.withInitial(() -> new long[1]);
+
+        private static boolean isRecording() {
+            return jdk.jfr.FlightRecorder.isInitialized();
+        }
+
+        private static Object begin(Kind kind) {
+            DatabaseEvent event = create(kind);
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+
+        private static DatabaseEvent create(Kind kind) {
+            switch (kind) {
+                case READ:
+                    return new ReadEvent();
+                case ITERATE:
+                    return new IterateEvent();
+                case INSERT:
+                    return new InsertEvent();
+                case UPDATE:
+                    return new UpdateEvent();
+                case UPSERT:
+                    return new UpsertEvent();
+                case DELETE:
+                    return new DeleteEvent();
+                default:
+                    throw new IllegalArgumentException("Unknown kind of event " + kind);
+            }
+        }
+
+        private static void commit(DatabaseEvent event, EntityMapping<?> mapping, String sql, long rows) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.entityClass = mapping.getEntityClass();
+                event.table = mapping.getTable();
+                event.sql = sql;
+                event.rows = rows;
+                event.poolWait = lastPoolWait.get()[0];
+                event.waitedOnPool = event.poolWait > POOL_WAIT_THRESHOLD;
+                event.commit();
+            }
+        }
+
+        private static Object beginTransaction() {
+            TransactionEvent event = new TransactionEvent();
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+
+        private static void commitTransaction(TransactionEvent event, boolean committed) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.committed = committed;
+                event.poolWait = lastPoolWait.get()[0];
+                event.waitedOnPool = event.poolWait > POOL_WAIT_THRESHOLD;
+                event.commit();
+            }
+        }
+
+        private static Object beginMigration() {
+            MigrationEvent event = new MigrationEvent();
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+
+        private static void commitMigration(MigrationEvent event, String id, String description) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.id = id;
+                event.description = description;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package be.bagofwords.miniorm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("be.bagofwords.miniorm.Migration")
+@Label("Migration")
+@Category("mini-orm")
+class MigrationEvent extends Event {
+
+    @Label("Id")
+    String id;
+
+    @Label("Description")
+    String description;
+}
@@ -0,0 +1,9 @@
+package be.bagofwords.miniorm.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("be.bagofwords.miniorm.Read")
+@Label("Read Objects")
+class ReadEvent extends DatabaseEvent {
+}
@@ -0,0 +1,23 @@
+package be.bagofwords.miniorm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("be.bagofwords.miniorm.Transaction")
+@Label("Transaction")
+@Category("mini-orm")
+class TransactionEvent extends Event {
+
+    @Label("Committed")
+    boolean committed;
+
+    @Label("Waited On Pool")
+    boolean waitedOnPool;
+
+    @Label("Pool Wait")
+    @Timespan
+    long poolWait;
+}
@@ -0,0 +1,9 @@
+package be.bagofwords.miniorm.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("be.bagofwords.miniorm.Upsert")
+@Label("Insert Or Update Objects")
+class UpsertEvent extends DatabaseEvent {
+}
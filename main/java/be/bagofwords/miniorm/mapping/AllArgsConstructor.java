@@ -0,0 +1,69 @@
+package be.bagofwords.miniorm.mapping;
+
+import be.bagofwords.miniorm.codec.ColumnCodec;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+class AllArgsConstructor<T> implements InitializationMethod<T> {
+
+    private final Constructor<T> constructor;
+
+    AllArgsConstructor(Constructor<T> constructor) {
+        this.constructor = constructor;
+    }
+
+    @Override
+    public T createObject(Object[] values) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        return constructor.newInstance(values);
+    }
+
+    @Override
+    public RowReader<T> createRowReader(List<ColumnMapping> columns) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to access constructor " + constructor, e);
+        }
+        MethodHandle spreader = handle.asSpreader(Object[].class, columns.size()).asType(MethodType.methodType(Object.class, Object[].class));
+        ColumnCodec[] codecs = columns.stream().map(column -> column.codec).toArray(ColumnCodec[]::new);
+        return new ConstructorRowReader<>(spreader, codecs);
+    }
+
+    /**
+     * The arguments of the constructor need to be collected before the object exists, so this reader still allocates one
+     * array per row. Classes with a constructor without arguments are read without intermediate values.
+     */
+    private static class ConstructorRowReader<T> implements RowReader<T> {
+
+        private final MethodHandle constructor;
+        private final ColumnCodec[] codecs;
+
+        private ConstructorRowReader(MethodHandle constructor, ColumnCodec[] codecs) {
+            this.constructor = constructor;
+            this.codecs = codecs;
+        }
+
+        @Override
+        public T read(ResultSet resultSet) throws SQLException {
+            Object[] values = new Object[codecs.length];
+            for (int i = 0; i < codecs.length; i++) {
+                values[i] = codecs[i].read(resultSet, i + 1);
+            }
+            try {
+                return (T) (Object) constructor.invokeExact(values);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException("Failed to construct object", t);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package be.bagofwords.miniorm.mapping;
+
+import be.bagofwords.miniorm.codec.ColumnCodec;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A single column of an entity, resolved once when its {@link EntityMapping} is built.
+ */
+public class ColumnMapping {
+    public final String name;
+    public final Field field;
+    public final Class<?> type;
+    public final int sqlType;
+    public final ColumnCodec codec;
+    public final FieldAccessor accessor;
+
+    public ColumnMapping(Field field, ColumnCodec codec) {
+        this(field, codec, FieldAccessor.of(field));
+    }
+
+    public ColumnMapping(Field field, ColumnCodec codec, FieldAccessor accessor) {
+        this.name = field.getName();
+        this.field = field;
+        this.type = field.getType();
+        this.codec = codec;
+        this.sqlType = codec.getSqlType();
+        this.accessor = accessor;
+    }
+
+    public boolean isId() {
+        return EntityMapping.ID_COLUMN.equals(name);
+    }
+
+    /**
+     * Mutable values need to be copied before they are kept, otherwise changes to the original would also change the copy
+     */
+    public static Object copyValue(Object value) {
+        if (value instanceof byte[]) {
+            return Arrays.copyOf((byte[]) value, ((byte[]) value).length);
+        } else if (value instanceof Date) {
+            return ((Date) value).clone();
+        } else {
+            return value;
+        }
+    }
+}
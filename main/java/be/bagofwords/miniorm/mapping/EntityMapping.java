@@ -0,0 +1,135 @@
+package be.bagofwords.miniorm.mapping;
+
+import be.bagofwords.miniorm.cache.EntityCache;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Immutable description of how a class maps onto a table. Instances are built once per class by the
+ * {@link be.bagofwords.miniorm.EntityMappingService} and are safe to share between threads.
+ */
+public class EntityMapping<T> {
+
+    public static final String ID_COLUMN = "id";
+    /**
+     * Clauses are usually constants in the calling code, but nothing prevents callers from building them dynamically. This
+     * bounds the number of statements that are cached per operation.
+     */
+    private static final int MAX_CACHED_STATEMENTS = 512;
+    private static final String NO_CLAUSE = "";
+
+    private final Class<T> entityClass;
+    private final String table;
+    private final List<ColumnMapping> columns;
+    private final List<ColumnMapping> columnsWithoutId;
+    private final ColumnMapping idColumn;
+    private final boolean validIdType;
+    private final boolean trackChanges;
+    private final EntityCache cache;
+    private final InitializationMethod<T> initializationMethod;
+    private final RowReader<T> rowReader;
+    private final Map<String, Map<String, String>> cachedSql = new ConcurrentHashMap<>();
+
+    public EntityMapping(Class<T> entityClass, String table, List<ColumnMapping> columns, InitializationMethod<T> initializationMethod, boolean trackChanges, EntityCache cache) {
+        this.entityClass = entityClass;
+        this.table = table;
+        this.columns = Collections.unmodifiableList(columns);
+        this.columnsWithoutId = Collections.unmodifiableList(columns.stream().filter(column -> !column.isId()).collect(toList()));
+        this.idColumn = columns.stream().filter(ColumnMapping::isId).findFirst().orElse(null);
+        this.validIdType = idColumn == null || idColumn.type.equals(Long.class) || idColumn.type.equals(long.class);
+        this.initializationMethod = initializationMethod;
+        this.trackChanges = trackChanges;
+        this.cache = cache;
+        this.rowReader = initializationMethod == null ? resultSet -> {
+            throw createInitializationException();
+        } : initializationMethod.createRowReader(this.columns);
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public List<ColumnMapping> getColumns() {
+        return columns;
+    }
+
+    public List<ColumnMapping> getColumns(boolean includeId) {
+        return includeId ? columns : columnsWithoutId;
+    }
+
+    /**
+     * @return the id column, or null if this class does not have an id field
+     */
+    public ColumnMapping getIdColumn() {
+        if (!validIdType) {
+            throw new RuntimeException("The id field of class " + entityClass + " is not of type Long or long");
+        }
+        return idColumn;
+    }
+
+    public boolean hasIdColumn() {
+        return getIdColumn() != null;
+    }
+
+    /**
+     * @return true if the class is annotated with {@link be.bagofwords.miniorm.TrackChanges}
+     */
+    public boolean isTrackChanges() {
+        return trackChanges;
+    }
+
+    /**
+     * @return the cache of objects by id, or null if the class is not annotated with {@link be.bagofwords.miniorm.CacheById}
+     */
+    public EntityCache getCache() {
+        return cache;
+    }
+
+    public T createObject(Object[] values) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        if (initializationMethod == null) {
+            throw createInitializationException();
+        }
+        return initializationMethod.createObject(values);
+    }
+
+    public RowReader<T> getRowReader() {
+        return rowReader;
+    }
+
+    /**
+     * @param operation the kind of statement, e.g. select or update
+     * @param clause    the (optional) clause that is appended to the statement
+     * @param builder   generates the statement from the clause if it was not cached yet
+     */
+    public String getSql(String operation, String clause, Function<String, String> builder) {
+        Map<String, String> statements = cachedSql.get(operation);
+        if (statements == null) {
+            statements = cachedSql.computeIfAbsent(operation, o -> new ConcurrentHashMap<>());
+        }
+        String key = clause == null ? NO_CLAUSE : clause;
+        String sql = statements.get(key);
+        if (sql == null) {
+            sql = builder.apply(clause);
+            if (statements.size() < MAX_CACHED_STATEMENTS) {
+                statements.put(key, sql);
+            }
+        }
+        return sql;
+    }
+
+    private RuntimeException createInitializationException() {
+        return new RuntimeException("Could not construct instance of type " + entityClass + ", need a constructor without arguments, or a constructor with all arguments of same type and order as the fields");
+    }
+
+}
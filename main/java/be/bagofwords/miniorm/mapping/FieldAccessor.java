@@ -0,0 +1,53 @@
+package be.bagofwords.miniorm.mapping;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes a single field of an entity. The primitive accessors are overridden by implementations that can read
+ * or write an int, long, double or boolean field without boxing the value.
+ */
+public abstract class FieldAccessor {
+
+    /**
+     * @return an accessor that uses method handles on the field
+     */
+    public static FieldAccessor of(Field field) {
+        return new MethodHandleAccessor(field);
+    }
+
+    public abstract Object get(Object target);
+
+    public abstract void set(Object target, Object value);
+
+    public int getInt(Object target) {
+        return (Integer) get(target);
+    }
+
+    public long getLong(Object target) {
+        return (Long) get(target);
+    }
+
+    public double getDouble(Object target) {
+        return (Double) get(target);
+    }
+
+    public boolean getBoolean(Object target) {
+        return (Boolean) get(target);
+    }
+
+    public void setInt(Object target, int value) {
+        set(target, value);
+    }
+
+    public void setLong(Object target, long value) {
+        set(target, value);
+    }
+
+    public void setDouble(Object target, double value) {
+        set(target, value);
+    }
+
+    public void setBoolean(Object target, boolean value) {
+        set(target, value);
+    }
+}
@@ -0,0 +1,39 @@
+package be.bagofwords.miniorm.mapping;
+
+import be.bagofwords.miniorm.codec.ColumnCodec;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Constructs objects through the constructor with all arguments of a {@link GeneratedMapper}. Classes with a
+ * constructor without arguments use {@link NoArgsConstructor} with the factory of the mapper.
+ */
+class GeneratedConstructor<T> implements InitializationMethod<T> {
+
+    private final GeneratedMapper<T> mapper;
+
+    GeneratedConstructor(GeneratedMapper<T> mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public T createObject(Object[] values) {
+        return mapper.newInstance(values);
+    }
+
+    @Override
+    public RowReader<T> createRowReader(List<ColumnMapping> columns) {
+        ColumnCodec[] codecs = columns.stream().map(column -> column.codec).toArray(ColumnCodec[]::new);
+        return resultSet -> read(resultSet, codecs);
+    }
+
+    private T read(ResultSet resultSet, ColumnCodec[] codecs) throws SQLException {
+        Object[] values = new Object[codecs.length];
+        for (int i = 0; i < codecs.length; i++) {
+            values[i] = codecs[i].read(resultSet, i + 1);
+        }
+        return mapper.newInstance(values);
+    }
+}
@@ -0,0 +1,45 @@
+package be.bagofwords.miniorm.mapping;
+
+import java.util.List;
+
+/**
+ * Mapping of a class annotated with {@link be.bagofwords.miniorm.Table}, generated at compile time by the
+ * {@link be.bagofwords.miniorm.processor.MapperProcessor}. Fields are read and written and objects are constructed with
+ * plain java code instead of reflection. The generated class has the name of the entity class followed by _Mapper, in
+ * the same package.
+ */
+public interface GeneratedMapper<T> {
+
+    String SUFFIX = "_Mapper";
+
+    Class<T> getEntityClass();
+
+    String getTable();
+
+    /**
+     * @return the names of the public fields, in the same order as {@link Class#getFields()}
+     */
+    List<String> getColumnNames();
+
+    /**
+     * @return the types of the public fields, in the same order as {@link #getColumnNames()}, or null if the mapper was
+     * generated by a version that did not list them
+     */
+    default List<Class<?>> getColumnTypes() {
+        return null;
+    }
+
+    FieldAccessor getAccessor(String column);
+
+    boolean hasNoArgsConstructor();
+
+    T newInstance();
+
+    /**
+     * @return true if the class has a constructor with arguments of the same type and order as the columns
+     */
+    boolean hasAllArgsConstructor();
+
+    T newInstance(Object[] values);
+
+}
@@ -0,0 +1,68 @@
+package be.bagofwords.miniorm.mapping;
+
+import be.bagofwords.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+public class GeneratedMappers {
+
+    /**
+     * @return the generated mapper of this class, or null if no mapper was generated
+     */
+    public static <T> GeneratedMapper<T> find(Class<T> entityClass) {
+        ClassLoader classLoader = entityClass.getClassLoader();
+        if (classLoader == null) {
+            return null;
+        }
+        Class<?> mapperClass;
+        try {
+            mapperClass = Class.forName(getMapperName(entityClass.getName()), true, classLoader);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!GeneratedMapper.class.isAssignableFrom(mapperClass)) {
+            return null;
+        }
+        GeneratedMapper<T> mapper = instantiate(mapperClass);
+        if (mapper.getEntityClass() != entityClass) {
+            return null;
+        }
+        return mapper;
+    }
+
+    /**
+     * @return the mappers listed in META-INF/services by the annotation processor
+     */
+    public static List<GeneratedMapper<?>> loadAll() {
+        List<GeneratedMapper<?>> mappers = new ArrayList<>();
+        try {
+            for (GeneratedMapper mapper : ServiceLoader.load(GeneratedMapper.class)) {
+                mappers.add(mapper);
+            }
+        } catch (ServiceConfigurationError e) {
+            //Can happen when a listed class was removed or recompiled without the annotation processor. The remaining
+            //mappers are found when their class is first used.
+            Log.e("Failed to load generated mappers", e);
+        }
+        return mappers;
+    }
+
+    /**
+     * @param binaryName the binary name of the entity class, with $ as separator of nested classes
+     */
+    public static String getMapperName(String binaryName) {
+        return binaryName.replace('$', '_') + GeneratedMapper.SUFFIX;
+    }
+
+    private static <T> GeneratedMapper<T> instantiate(Class<?> mapperClass) {
+        try {
+            return (GeneratedMapper<T>) mapperClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to create generated mapper " + mapperClass, e);
+        }
+    }
+
+}
@@ -0,0 +1,12 @@
+package be.bagofwords.miniorm.mapping;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+public interface InitializationMethod<T> {
+
+    T createObject(Object[] values) throws IllegalAccessException, InvocationTargetException, InstantiationException;
+
+    RowReader<T> createRowReader(List<ColumnMapping> columns);
+
+}
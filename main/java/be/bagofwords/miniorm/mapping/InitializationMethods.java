@@ -0,0 +1,45 @@
+package be.bagofwords.miniorm.mapping;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+
+public class InitializationMethods {
+
+    /**
+     * @return the initialization method of a generated mapper, or null if the class can not be constructed from its
+     * columns
+     */
+    public static <T> InitializationMethod<T> determine(GeneratedMapper<T> mapper, List<ColumnMapping> columns) {
+        if (mapper.hasAllArgsConstructor()) {
+            return new GeneratedConstructor<>(mapper);
+        } else if (mapper.hasNoArgsConstructor()) {
+            return new NoArgsConstructor<>(mapper::newInstance, columns);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * @return the initialization method for this class, or null if the class can not be constructed from its columns
+     */
+    public static <T> InitializationMethod<T> determine(Class<T> aClass, List<ColumnMapping> columns) {
+        Class[] fieldTypes = new Class[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            fieldTypes[i] = columns.get(i).type;
+        }
+        try {
+            //Do we have single constructor for all fields?
+            Constructor<T> constructor = aClass.getConstructor(fieldTypes);
+            return new AllArgsConstructor<>(constructor);
+        } catch (NoSuchMethodException exp) {
+            //OK
+        }
+        try {
+            Constructor<T> constructor = aClass.getConstructor();
+            return new NoArgsConstructor<>(constructor, columns);
+        } catch (NoSuchMethodException exp2) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package be.bagofwords.miniorm.mapping;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reads and writes a single public field through method handles. The primitive accessors use exactly typed handles, so
+ * reading or writing an int, long, double or boolean field does not box the value.
+ */
+class MethodHandleAccessor extends FieldAccessor {
+
+    private final Field field;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final MethodHandle genericGetter;
+    private final MethodHandle genericSetter;
+
+    MethodHandleAccessor(Field field) {
+        this.field = field;
+        field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Class<?> type = field.getType();
+        Class<?> exactType = type.isPrimitive() ? type : Object.class;
+        try {
+            MethodHandle rawGetter = withTarget(lookup.unreflectGetter(field));
+            this.getter = rawGetter.asType(MethodType.methodType(exactType, Object.class));
+            this.genericGetter = rawGetter.asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to create getter for field " + field, e);
+        }
+        MethodHandle rawSetter;
+        try {
+            rawSetter = withTarget(lookup.unreflectSetter(field));
+        } catch (IllegalAccessException e) {
+            //Final fields can not be set, these objects need to be created with a constructor
+            rawSetter = null;
+        }
+        this.setter = rawSetter == null ? null : rawSetter.asType(MethodType.methodType(void.class, Object.class, exactType));
+        this.genericSetter = rawSetter == null ? null : rawSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+    }
+
+    private MethodHandle withTarget(MethodHandle handle) {
+        if (Modifier.isStatic(field.getModifiers())) {
+            return MethodHandles.dropArguments(handle, 0, field.getDeclaringClass());
+        } else {
+            return handle;
+        }
+    }
+
+    @Override
+    public Object get(Object target) {
+        try {
+            return (Object) genericGetter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public int getInt(Object target) {
+        try {
+            return (int) getter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public long getLong(Object target) {
+        try {
+            return (long) getter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public double getDouble(Object target) {
+        try {
+            return (double) getter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(Object target) {
+        try {
+            return (boolean) getter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public void set(Object target, Object value) {
+        try {
+            checkSetter().invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public void setInt(Object target, int value) {
+        try {
+            checkSetter();
+            setter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public void setLong(Object target, long value) {
+        try {
+            checkSetter();
+            setter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public void setDouble(Object target, double value) {
+        try {
+            checkSetter();
+            setter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public void setBoolean(Object target, boolean value) {
+        try {
+            checkSetter();
+            setter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    private MethodHandle checkSetter() {
+        if (genericSetter == null) {
+            throw new RuntimeException("Field " + field + " is final and can not be set");
+        }
+        return genericSetter;
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else {
+            return new RuntimeException(t);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package be.bagofwords.miniorm.mapping;
+
+import be.bagofwords.miniorm.codec.ColumnCodec;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Supplier;
+
+class NoArgsConstructor<T> implements InitializationMethod<T> {
+
+    private final Supplier<T> factory;
+    private final List<ColumnMapping> columns;
+
+    NoArgsConstructor(Constructor<T> constructor, List<ColumnMapping> columns) {
+        this(createFactory(constructor), columns);
+    }
+
+    NoArgsConstructor(Supplier<T> factory, List<ColumnMapping> columns) {
+        this.factory = factory;
+        this.columns = columns;
+    }
+
+    @Override
+    public T createObject(Object[] values) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        T instance = factory.get();
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).accessor.set(instance, values[i]);
+        }
+        return instance;
+    }
+
+    @Override
+    public RowReader<T> createRowReader(List<ColumnMapping> columns) {
+        ColumnCodec[] codecs = columns.stream().map(column -> column.codec).toArray(ColumnCodec[]::new);
+        FieldAccessor[] accessors = columns.stream().map(column -> column.accessor).toArray(FieldAccessor[]::new);
+        return new SetterRowReader<>(factory, codecs, accessors);
+    }
+
+    private static <T> Supplier<T> createFactory(Constructor<T> constructor) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflectConstructor(constructor);
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class), handle, handle.type());
+            Supplier<T> factory = (Supplier<T>) callSite.getTarget().invokeExact();
+            //A class that is not visible from our class loader only fails when the factory is first called
+            factory.get();
+            return factory;
+        } catch (Throwable t) {
+            //The constructor can not be linked or the factory can not call it, fall back to the (slower) reflective constructor
+            return () -> {
+                try {
+                    return constructor.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException("Failed to construct instance of " + constructor.getDeclaringClass(), e);
+                }
+            };
+        }
+    }
+
+    private static class SetterRowReader<T> implements RowReader<T> {
+
+        private final Supplier<T> factory;
+        private final ColumnCodec[] codecs;
+        private final FieldAccessor[] accessors;
+
+        private SetterRowReader(Supplier<T> factory, ColumnCodec[] codecs, FieldAccessor[] accessors) {
+            this.factory = factory;
+            this.codecs = codecs;
+            this.accessors = accessors;
+        }
+
+        @Override
+        public T read(ResultSet resultSet) throws SQLException {
+            T instance = factory.get();
+            for (int i = 0; i < codecs.length; i++) {
+                codecs[i].readInto(resultSet, i + 1, instance, accessors[i]);
+            }
+            return instance;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package be.bagofwords.miniorm.mapping;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Creates an object from the current row of a result set. The columns of the result set need to be in the same order as
+ * the columns of the {@link EntityMapping} the reader was compiled for.
+ */
+public interface RowReader<T> {
+
+    T read(ResultSet resultSet) throws SQLException;
+
+}
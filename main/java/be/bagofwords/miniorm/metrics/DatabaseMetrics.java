@@ -0,0 +1,214 @@
+package be.bagofwords.miniorm.metrics;
+
+import be.bagofwords.logging.Log;
+import be.bagofwords.miniorm.mapping.ColumnMapping;
+import be.bagofwords.miniorm.workload.WorkloadRecorder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool and statement metrics of the {@link be.bagofwords.miniorm.DatabaseService}. Callers take a timestamp with
+ * {@link #start()} and pass it to one of the record methods. When metrics, the slow query log and workload recording
+ * are all disabled, start() returns 0 without reading the clock and all record methods return immediately.
+ */
+public class DatabaseMetrics {
+
+    private static final int MAX_LOGGED_ARGS = 10;
+    private static final int MAX_LOGGED_ARG_LENGTH = 32;
+
+    private final boolean metricsEnabled;
+    private final long slowQueryNanos;
+    private volatile boolean enabled;
+    private volatile WorkloadRecorder recorder;
+    private final Histogram checkoutWait = new Histogram();
+    private final Histogram connectionHold = new Histogram();
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    /**
+     * @param slowQueryMs statements that take longer are logged, 0 disables the slow query log
+     */
+    public DatabaseMetrics(boolean metricsEnabled, long slowQueryMs) {
+        this.metricsEnabled = metricsEnabled;
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMs);
+        this.enabled = metricsEnabled || slowQueryMs > 0;
+    }
+
+    /**
+     * @param recorder receives every statement and connection checkout from now on, null stops recording
+     * @return the previous recorder, or null
+     */
+    public synchronized WorkloadRecorder setRecorder(WorkloadRecorder recorder) {
+        WorkloadRecorder previous = this.recorder;
+        this.recorder = recorder;
+        this.enabled = metricsEnabled || slowQueryNanos > 0 || recorder != null;
+        return previous;
+    }
+
+    public WorkloadRecorder getRecorder() {
+        return recorder;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void recordCheckout(long start) {
+        if (metricsEnabled) {
+            checkoutWait.record(System.nanoTime() - start);
+        }
+        WorkloadRecorder recorder = this.recorder;
+        if (recorder != null && start != 0) {
+            recorder.recordCheckout(start, System.nanoTime());
+        }
+    }
+
+    public void recordHold(long start) {
+        if (metricsEnabled) {
+            connectionHold.record(System.nanoTime() - start);
+        }
+        WorkloadRecorder recorder = this.recorder;
+        if (recorder != null && start != 0) {
+            recorder.recordHold(start, System.nanoTime());
+        }
+    }
+
+    /**
+     * Records a statement that writes rows
+     *
+     * @param sql  is only used in the slow query log, null for statements that consist of several batches
+     * @param args is only used in the slow query log
+     */
+    public void recordStatement(String entity, String operation, String sql, Object[] args, long start, long numOfRows) {
+        if (enabled) {
+            long end = System.nanoTime();
+            record(entity, operation, sql, args, start, end, end, numOfRows);
+            WorkloadRecorder recorder = this.recorder;
+            if (recorder != null && start != 0) {
+                recorder.recordStatement(entity, operation, sql, args, start, end, numOfRows);
+            }
+        }
+    }
+
+    /**
+     * Records a statement that writes rows and was executed once for every object
+     *
+     * @param sql         the statement for a single object, null if the objects were written with several different statements
+     * @param whereColumn column that is bound after the other columns, such as the id of an update, or null
+     */
+    public void recordObjectStatement(String entity, String operation, String sql, List<ColumnMapping> columns, ColumnMapping whereColumn, int numOfObjects, long start, long numOfRows) {
+        if (enabled) {
+            long end = System.nanoTime();
+            record(entity, operation, sql, null, start, end, end, numOfRows);
+            WorkloadRecorder recorder = this.recorder;
+            if (recorder != null && start != 0) {
+                recorder.recordObjectStatement(entity, operation, sql, columns, whereColumn, numOfObjects, start, end, numOfRows);
+            }
+        }
+    }
+
+    /**
+     * Records a query of which the rows were read into objects
+     *
+     * @param executed the time at which the query was executed and the reading of rows started
+     */
+    public void recordRead(String entity, String operation, String sql, Object[] args, long start, long executed, long numOfRows) {
+        if (enabled) {
+            long end = System.nanoTime();
+            record(entity, operation, sql, args, start, executed, end, numOfRows);
+            WorkloadRecorder recorder = this.recorder;
+            if (recorder != null && start != 0) {
+                recorder.recordStatement(entity, operation, sql, args, start, end, numOfRows);
+            }
+        }
+    }
+
+    public void recordBatch(String entity, String operation, int batchSize) {
+        if (metricsEnabled) {
+            getOperation(entity, operation).batchSizes.record(batchSize);
+        }
+    }
+
+    private void record(String entity, String operation, String sql, Object[] args, long start, long executed, long end, long numOfRows) {
+        if (metricsEnabled) {
+            OperationMetrics metrics = getOperation(entity, operation);
+            metrics.statementLatency.record(executed - start);
+            if (end != executed) {
+                metrics.mappingLatency.record(end - executed);
+            }
+            metrics.addRows(numOfRows);
+        }
+        long duration = end - start;
+        if (slowQueryNanos > 0 && duration >= slowQueryNanos) {
+            String statement = sql == null ? operation + " of " + entity : sql;
+            Log.i("Slow " + operation + " on " + entity + " took " + TimeUnit.NANOSECONDS.toMillis(duration) + "ms for " + numOfRows + " rows: " + statement + summarizeArgs(args));
+        }
+    }
+
+    /**
+     * @return the time in nanoseconds that callers waited for a connection from the pool
+     */
+    public Histogram getCheckoutWait() {
+        return checkoutWait;
+    }
+
+    /**
+     * @return the time in nanoseconds between taking a connection from the pool and returning it
+     */
+    public Histogram getConnectionHold() {
+        return connectionHold;
+    }
+
+    public OperationMetrics getOperation(String entity, String operation) {
+        String key = entity + '/' + operation;
+        OperationMetrics metrics = operations.get(key);
+        if (metrics == null) {
+            metrics = operations.computeIfAbsent(key, k -> new OperationMetrics(entity, operation));
+        }
+        return metrics;
+    }
+
+    public Collection<OperationMetrics> getOperations() {
+        return Collections.unmodifiableCollection(operations.values());
+    }
+
+    private static String summarizeArgs(Object[] args) {
+        if (args == null || args.length == 0) {
+            return "";
+        }
+        StringBuilder summary = new StringBuilder(" [");
+        for (int i = 0; i < Math.min(args.length, MAX_LOGGED_ARGS); i++) {
+            if (i > 0) {
+                summary.append(", ");
+            }
+            summary.append(summarizeArg(args[i]));
+        }
+        if (args.length > MAX_LOGGED_ARGS) {
+            summary.append(", ... ").append(args.length - MAX_LOGGED_ARGS).append(" more");
+        }
+        return summary.append(']').toString();
+    }
+
+    private static String summarizeArg(Object arg) {
+        if (arg == null) {
+            return "null";
+        } else if (arg instanceof byte[]) {
+            return "byte[" + ((byte[]) arg).length + "]";
+        } else if (arg instanceof Number || arg instanceof Boolean) {
+            return arg.toString();
+        }
+        String value = arg.toString();
+        if (value.length() > MAX_LOGGED_ARG_LENGTH) {
+            value = value.substring(0, MAX_LOGGED_ARG_LENGTH) + "...(" + value.length() + " chars)";
+        }
+        return "'" + value + "'";
+    }
+}
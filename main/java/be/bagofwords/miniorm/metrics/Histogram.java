@@ -0,0 +1,72 @@
+package be.bagofwords.miniorm.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of non-negative values, with one bucket per power of two. Percentiles are therefore accurate up to a
+ * factor two, which is enough to tell a 1ms query from a 100ms query.
+ */
+public class Histogram {
+
+    private static final int NUM_OF_BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_OF_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        //Bucket i holds the values in [2^(i-1), 2^i - 1], bucket 0 holds 0
+        buckets.incrementAndGet(NUM_OF_BUCKETS - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : getSum() / (double) count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return an upper bound of the value at this percentile
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(getMax(), (1L << i) - 1);
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + Math.round(getMean()) + " p50=" + getPercentile(50) + " p99=" + getPercentile(99) + " max=" + getMax();
+    }
+}
@@ -0,0 +1,42 @@
+package be.bagofwords.miniorm.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one kind of operation (select, insert, update, ...) on one table. Latencies are in nanoseconds. The statement
+ * latency of a query ends when it returns its first rows, the mapping latency covers reading all rows into objects.
+ */
+public class OperationMetrics {
+    public final String entity;
+    public final String operation;
+    public final Histogram statementLatency = new Histogram();
+    public final Histogram mappingLatency = new Histogram();
+    public final Histogram batchSizes = new Histogram();
+    private final LongAdder rows = new LongAdder();
+
+    OperationMetrics(String entity, String operation) {
+        this.entity = entity;
+        this.operation = operation;
+    }
+
+    void addRows(long numOfRows) {
+        rows.add(numOfRows);
+    }
+
+    /**
+     * @return the number of rows that were read or written
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public String toString() {
+        return entity + " " + operation + ": rows=" + getRows() + " statement p50=" + toMicros(statementLatency.getPercentile(50)) + "us p99=" + toMicros(statementLatency.getPercentile(99)) + "us mapping p50=" + toMicros(mappingLatency.getPercentile(50)) + "us batches=" + batchSizes.getCount();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
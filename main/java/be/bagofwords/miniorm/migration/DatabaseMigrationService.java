@@ -5,6 +5,7 @@ import be.bagofwords.minidepi.ApplicationContext;
 import be.bagofwords.minidepi.LifeCycleBean;
 import be.bagofwords.minidepi.annotations.Inject;
 import be.bagofwords.miniorm.DatabaseService;
+import be.bagofwords.miniorm.jfr.JfrEvents;
 
 import java.sql.*;
 import java.util.List;
@@ -81,29 +82,33 @@ public class DatabaseMigrationService implements LifeCycleBean {
             for (int j = ind + 1; j < migrations.size(); j++) {
                 BaseMigration migration = migrations.get(j);
                 Log.i("Executing migration " + migration.getId() + " \"" + migration.getDescription() + "\"");
+                Object event = JfrEvents.beginMigration();
                 this.databaseService.execute(migration::execute);
                 version = migration.getId();
                 updateVersion(version);
+                JfrEvents.commitMigration(event, migration.getId(), migration.getDescription());
             }
         }
     }
 
     private void updateVersion(String version) throws SQLException {
         this.databaseService.execute(connection -> {
-            PreparedStatement statement = connection.prepareStatement("update " + MIGRATION_TABLE + " set version=?");
-            statement.setString(1, version);
-            statement.executeUpdate();
+            try (PreparedStatement statement = connection.prepareStatement("update " + MIGRATION_TABLE + " set version=?")) {
+                statement.setString(1, version);
+                statement.executeUpdate();
+            }
         });
     }
 
     private String getVersion() throws SQLException {
         return this.databaseService.execute(connection -> {
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery("select version from " + MIGRATION_TABLE);
-            if (resultSet.first()) {
-                return resultSet.getString(1);
-            } else {
-                throw new IllegalStateException("The version table " + MIGRATION_TABLE + " does not contain a single row!");
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("select version from " + MIGRATION_TABLE)) {
+                if (resultSet.first()) {
+                    return resultSet.getString(1);
+                } else {
+                    throw new IllegalStateException("The version table " + MIGRATION_TABLE + " does not contain a single row!");
+                }
             }
         });
     }
@@ -113,11 +118,14 @@ public class DatabaseMigrationService implements LifeCycleBean {
             if (!migrationTableExists(connection)) {
                 //Table does not exist yet
                 Log.i("Table " + MIGRATION_TABLE + " does not yet exist, creating it...");
-                connection.createStatement().execute("create table " + MIGRATION_TABLE + " ( `version` varchar(30) );");
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table " + MIGRATION_TABLE + " ( `version` varchar(30) );");
+                }
                 insertInitialVersion(connection);
             }
             //Check that the version table contains at least one row
-            try (ResultSet result = connection.createStatement().executeQuery("select version from " + MIGRATION_TABLE + ";")) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("select version from " + MIGRATION_TABLE + ";")) {
                 if (!result.first()) {
                     insertInitialVersion(connection);
                 }
@@ -126,7 +134,8 @@ public class DatabaseMigrationService implements LifeCycleBean {
     }
 
     private boolean migrationTableExists(Connection connection) throws SQLException {
-        try (ResultSet resultSet = connection.createStatement().executeQuery("show tables;")) {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("show tables;")) {
             while (resultSet.next()) {
                 String tableName = resultSet.getString(1);
                 Log.i("Database contains table " + tableName);
@@ -139,8 +148,9 @@ public class DatabaseMigrationService implements LifeCycleBean {
     }
 
     private void insertInitialVersion(Connection connection) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement("insert into " + MIGRATION_TABLE + " (version) values ('" + INITIAL_VERSION + "')");
-        statement.execute();
+        try (PreparedStatement statement = connection.prepareStatement("insert into " + MIGRATION_TABLE + " (version) values ('" + INITIAL_VERSION + "')")) {
+            statement.execute();
+        }
     }
 
     private List<BaseMigration> collectMigrations() {
@@ -20,9 +20,9 @@ public class SimpleMigration implements BaseMigration {
 
     @Override
     public void execute(Connection connection) throws SQLException {
-        Statement statement = connection.createStatement();
-        statement.execute(this.statement);
-        statement.close();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(this.statement);
+        }
     }
 
     @Override
@@ -0,0 +1,47 @@
+package be.bagofwords.miniorm.pool;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class C3p0ConnectionProvider implements ConnectionProvider {
+
+    private ComboPooledDataSource pool;
+
+    @Override
+    public void start(PoolSettings settings) {
+        pool = new ComboPooledDataSource();
+        pool.setJdbcUrl(settings.jdbcUrl);
+        pool.setUser(settings.user);
+        pool.setPassword(settings.password);
+        pool.setMaxPoolSize(settings.maxPoolSize);
+        pool.setMinPoolSize(settings.minPoolSize);
+        pool.setInitialPoolSize(settings.initialPoolSize);
+        pool.setMaxIdleTime(settings.maxIdleTimeSeconds);
+        pool.setCheckoutTimeout(settings.checkoutTimeoutMs);
+        pool.setAutoCommitOnClose(settings.autoCommitOnClose);
+        //c3p0 keeps closed statements prepared, so statements that are executed repeatedly are only parsed once per connection
+        pool.setMaxStatementsPerConnection(settings.maxStatementsPerConnection);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    @Override
+    public int getMaxPoolSize() {
+        return pool.getMaxPoolSize();
+    }
+
+    @Override
+    public int getNumOfBusyConnections() throws SQLException {
+        return pool.getNumBusyConnectionsDefaultUser();
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
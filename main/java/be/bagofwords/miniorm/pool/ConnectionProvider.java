@@ -0,0 +1,25 @@
+package be.bagofwords.miniorm.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Source of pooled connections for the {@link be.bagofwords.miniorm.DatabaseService}. The implementation is chosen with
+ * the property database.connectionProvider, which holds the name of a class with a constructor without arguments. By
+ * default connections are pooled by c3p0.
+ */
+public interface ConnectionProvider {
+
+    void start(PoolSettings settings);
+
+    /**
+     * @return a connection that is returned to the pool when it is closed
+     */
+    Connection getConnection() throws SQLException;
+
+    int getMaxPoolSize();
+
+    int getNumOfBusyConnections() throws SQLException;
+
+    void close();
+}
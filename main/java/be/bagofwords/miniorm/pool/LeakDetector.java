@@ -0,0 +1,87 @@
+package be.bagofwords.miniorm.pool;
+
+import be.bagofwords.logging.Log;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers where every checked out connection was acquired, and logs that stack once if the connection is held longer
+ * than the threshold. Connections are forgotten when they are released, or when they turn out to be closed.
+ */
+public class LeakDetector {
+
+    private final long thresholdMs;
+    private final Map<Connection, Lease> leases = new IdentityHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public LeakDetector(long thresholdMs) {
+        this.thresholdMs = thresholdMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mini-orm-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, thresholdMs / 2);
+        this.scheduler.scheduleWithFixedDelay(this::checkLeases, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void acquired(Connection connection) {
+        Lease lease = new Lease(new Throwable("Connection acquired by " + Thread.currentThread().getName()), System.currentTimeMillis());
+        synchronized (leases) {
+            leases.put(connection, lease);
+        }
+    }
+
+    public void released(Connection connection) {
+        synchronized (leases) {
+            leases.remove(connection);
+        }
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void checkLeases() {
+        long now = System.currentTimeMillis();
+        synchronized (leases) {
+            Iterator<Map.Entry<Connection, Lease>> iterator = leases.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Connection, Lease> entry = iterator.next();
+                Lease lease = entry.getValue();
+                if (isClosed(entry.getKey())) {
+                    iterator.remove();
+                } else if (!lease.reported && now - lease.acquired > thresholdMs) {
+                    lease.reported = true;
+                    Log.e("Connection was not returned to the pool after " + (now - lease.acquired) + "ms, possible connection leak", lease.stack);
+                }
+            }
+        }
+    }
+
+    private static boolean isClosed(Connection connection) {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static class Lease {
+        private final Throwable stack;
+        private final long acquired;
+        private boolean reported;
+
+        private Lease(Throwable stack, long acquired) {
+            this.stack = stack;
+            this.acquired = acquired;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package be.bagofwords.miniorm.pool;
+
+import be.bagofwords.minidepi.ApplicationContext;
+
+/**
+ * Pool configuration, read from the application context with defaults from mini-orm.properties
+ */
+public class PoolSettings {
+    public final String jdbcUrl;
+    public final String user;
+    public final String password;
+    public final int maxPoolSize;
+    public final int minPoolSize;
+    public final int initialPoolSize;
+    public final int maxIdleTimeSeconds;
+    public final int checkoutTimeoutMs;
+    public final int maxStatementsPerConnection;
+    public final boolean autoCommitOnClose;
+
+    public PoolSettings(ApplicationContext context, String defaultProperties) {
+        this.jdbcUrl = context.getProperty("jdbc.url");
+        this.user = context.getProperty("database.user", defaultProperties);
+        this.password = context.getProperty("database.password", defaultProperties);
+        this.maxPoolSize = Integer.parseInt(context.getProperty("database.maxPoolSize", defaultProperties));
+        this.minPoolSize = Integer.parseInt(context.getProperty("database.minPoolSize", defaultProperties));
+        this.initialPoolSize = Integer.parseInt(context.getProperty("database.initialPoolSize", defaultProperties));
+        this.maxIdleTimeSeconds = Integer.parseInt(context.getProperty("database.maxIdleTimeSeconds", defaultProperties));
+        this.checkoutTimeoutMs = Integer.parseInt(context.getProperty("database.checkoutTimeoutMs", defaultProperties));
+        this.maxStatementsPerConnection = Integer.parseInt(context.getProperty("database.maxStatementsPerConnection", defaultProperties));
+        this.autoCommitOnClose = Boolean.parseBoolean(context.getProperty("database.autoCommitOnClose", defaultProperties));
+    }
+
+    private PoolSettings(PoolSettings settings, String jdbcUrl) {
+        this.jdbcUrl = jdbcUrl;
+        this.user = settings.user;
+        this.password = settings.password;
+        this.maxPoolSize = settings.maxPoolSize;
+        this.minPoolSize = settings.minPoolSize;
+        this.initialPoolSize = settings.initialPoolSize;
+        this.maxIdleTimeSeconds = settings.maxIdleTimeSeconds;
+        this.checkoutTimeoutMs = settings.checkoutTimeoutMs;
+        this.maxStatementsPerConnection = settings.maxStatementsPerConnection;
+        this.autoCommitOnClose = settings.autoCommitOnClose;
+    }
+
+    /**
+     * @return the same settings for a different database, e.g. a replica
+     */
+    public PoolSettings withJdbcUrl(String jdbcUrl) {
+        return new PoolSettings(this, jdbcUrl);
+    }
+}
@@ -0,0 +1,117 @@
+package be.bagofwords.miniorm.pool;
+
+import be.bagofwords.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the replica that serves a read. Replicas are used in round robin order. A replica that fails to provide a
+ * connection is ejected for a while, after which it is tried again. Reads go to the primary when all replicas are
+ * ejected, or when the table that is read was written by this application less than the read-your-writes window ago.
+ */
+public class ReplicaRouter {
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final long readYourWritesNanos;
+    private final long ejectionNanos;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private volatile long lastWrite;
+    private volatile long lastWriteOfUnknownTables;
+
+    public ReplicaRouter(List<ConnectionProvider> replicas, long readYourWritesMs, long ejectionMs) {
+        for (ConnectionProvider replica : replicas) {
+            this.replicas.add(new Replica(replica));
+        }
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMs);
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMs);
+        //Nothing was written yet
+        this.lastWrite = System.nanoTime() - readYourWritesNanos - 1;
+        this.lastWriteOfUnknownTables = lastWrite;
+    }
+
+    /**
+     * @param table the table that is read, or null if it is not known
+     * @return the replica that should serve this read, or null if it should be served by the primary
+     */
+    public ConnectionProvider selectReplica(String table) {
+        if (readYourWritesNanos > 0 && wasWrittenRecently(table)) {
+            return null;
+        }
+        int start = nextReplica.getAndIncrement();
+        long now = System.nanoTime();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+            if (now - replica.ejectedUntil >= 0) {
+                return replica.provider;
+            }
+        }
+        return null;
+    }
+
+    public int getNumOfReplicas() {
+        return replicas.size();
+    }
+
+    public void eject(ConnectionProvider provider, Throwable cause) {
+        for (Replica replica : replicas) {
+            if (replica.provider == provider) {
+                Log.e("Ejecting replica for " + TimeUnit.NANOSECONDS.toMillis(ejectionNanos) + "ms, reads are served by the other replicas or the primary", cause);
+                replica.ejectedUntil = System.nanoTime() + ejectionNanos;
+            }
+        }
+    }
+
+    public void markWritten(String table) {
+        if (readYourWritesNanos > 0) {
+            long now = System.nanoTime();
+            lastWrites.put(table, now);
+            lastWrite = now;
+        }
+    }
+
+    /**
+     * For writes of which the tables are not known
+     */
+    public void markAllWritten() {
+        if (readYourWritesNanos > 0) {
+            long now = System.nanoTime();
+            lastWriteOfUnknownTables = now;
+            lastWrite = now;
+        }
+    }
+
+    public void close() {
+        for (Replica replica : replicas) {
+            replica.provider.close();
+        }
+    }
+
+    private boolean wasWrittenRecently(String table) {
+        long now = System.nanoTime();
+        if (now - lastWrite >= readYourWritesNanos) {
+            //No table was written recently
+            return false;
+        }
+        if (table == null || now - lastWriteOfUnknownTables < readYourWritesNanos) {
+            return true;
+        }
+        Long tableWrite = lastWrites.get(table);
+        return tableWrite != null && now - tableWrite < readYourWritesNanos;
+    }
+
+    private static class Replica {
+        private final ConnectionProvider provider;
+        private volatile long ejectedUntil;
+
+        private Replica(ConnectionProvider provider) {
+            this.provider = provider;
+            this.ejectedUntil = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package be.bagofwords.miniorm.processor;
+
+import be.bagofwords.miniorm.Table;
+import be.bagofwords.miniorm.mapping.GeneratedMapper;
+import be.bagofwords.miniorm.mapping.GeneratedMappers;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@link GeneratedMapper} for every class annotated with {@link Table}, and lists the mappers in
+ * META-INF/services so their mappings are built when the {@link be.bagofwords.miniorm.DatabaseService} starts. Classes
+ * that can not be accessed from their own package are skipped, these are still mapped with reflection.
+ * <p>
+ * The processor is registered in META-INF/services of this library, so it runs for every project that depends on it.
+ * Compile with -proc:none to disable it.
+ */
+@SupportedAnnotationTypes("be.bagofwords.miniorm.Table")
+public class MapperProcessor extends AbstractProcessor {
+
+    private static final String SERVICES_FILE = "META-INF/services/" + GeneratedMapper.class.getName();
+    private static final String ACCESSOR = "be.bagofwords.miniorm.mapping.FieldAccessor";
+
+    private final Set<String> generatedMappers = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Table.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                TypeElement type = (TypeElement) element;
+                if (isAccessible(type)) {
+                    generate(type);
+                } else {
+                    note(type, "Not generating a mapper for " + type + ", the class is not accessible from its package");
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !generatedMappers.isEmpty()) {
+            writeServicesFile();
+        }
+        //No other processor handles @Table, claiming it avoids a warning with -Xlint
+        return true;
+    }
+
+    private boolean isAccessible(TypeElement type) {
+        Element element = type;
+        while (element instanceof TypeElement) {
+            TypeElement enclosingType = (TypeElement) element;
+            if (enclosingType.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            NestingKind nesting = enclosingType.getNestingKind();
+            if (nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            if (nesting == NestingKind.MEMBER && element == type && !enclosingType.getModifiers().contains(Modifier.STATIC)) {
+                //Objects of inner classes can not be constructed without an instance of the enclosing class
+                return false;
+            }
+            element = enclosingType.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        List<VariableElement> fields = new ArrayList<>();
+        addPublicFields(type, fields);
+        Set<String> names = new HashSet<>();
+        for (VariableElement field : fields) {
+            if (!names.add(field.getSimpleName().toString())) {
+                note(type, "Not generating a mapper for " + type + ", it has more than one field named " + field.getSimpleName());
+                return;
+            }
+        }
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String mapperName = GeneratedMappers.getMapperName(processingEnv.getElementUtils().getBinaryName(type).toString());
+        String simpleMapperName = packageName.isEmpty() ? mapperName : mapperName.substring(packageName.length() + 1);
+        String source = new MapperWriter(type, fields, packageName, simpleMapperName).write();
+        try (Writer writer = processingEnv.getFiler().createSourceFile(mapperName, type).openWriter()) {
+            writer.write(source);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write mapper " + mapperName + ": " + e, type);
+            return;
+        }
+        generatedMappers.add(mapperName);
+    }
+
+    /**
+     * Adds the public fields in the same order as {@link Class#getFields()}: the fields of the class itself, then those
+     * of its interfaces and then those of its superclass.
+     */
+    private void addPublicFields(TypeElement type, List<VariableElement> fields) {
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.PUBLIC)) {
+                fields.add(field);
+            }
+        }
+        for (TypeMirror anInterface : type.getInterfaces()) {
+            addPublicFields((TypeElement) processingEnv.getTypeUtils().asElement(anInterface), fields);
+        }
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            addPublicFields((TypeElement) processingEnv.getTypeUtils().asElement(superclass), fields);
+        }
+    }
+
+    /**
+     * Keeps the mappers listed by earlier compilations, so an incremental compilation of a few classes does not remove
+     * the others. Mappers of classes that were removed are ignored at runtime.
+     */
+    private void writeServicesFile() {
+        Set<String> mappers = new TreeSet<>(generatedMappers);
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_FILE);
+            try (Reader reader = existing.openReader(true); BufferedReader lines = new BufferedReader(reader)) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        mappers.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            //No mappers listed yet
+        }
+        try (Writer writer = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_FILE).openWriter()) {
+            for (String mapper : mappers) {
+                writer.write(mapper);
+                writer.write("\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + SERVICES_FILE + ": " + e);
+        }
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+
+    private class MapperWriter {
+
+        private final TypeElement type;
+        private final List<VariableElement> fields;
+        private final String packageName;
+        private final String simpleMapperName;
+        private final String entity;
+        private final StringBuilder source = new StringBuilder();
+
+        private MapperWriter(TypeElement type, List<VariableElement> fields, String packageName, String simpleMapperName) {
+            this.type = type;
+            this.fields = fields;
+            this.packageName = packageName;
+            this.simpleMapperName = simpleMapperName;
+            this.entity = type.getQualifiedName().toString();
+        }
+
+        private String write() {
+            if (!packageName.isEmpty()) {
+                line(0, "package " + packageName + ";");
+                line(0, "");
+            }
+            line(0, "/**");
+            line(0, " * Generated by " + MapperProcessor.class.getName() + " from " + entity + ", do not edit.");
+            line(0, " */");
+            line(0, "@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            line(0, "public final class " + simpleMapperName + " implements " + GeneratedMapper.class.getName() + "<" + entity + "> {");
+            line(0, "");
+            StringBuilder columns = new StringBuilder();
+            StringBuilder columnTypes = new StringBuilder();
+            for (VariableElement field : fields) {
+                if (columns.length() > 0) {
+                    columns.append(", ");
+                    columnTypes.append(", ");
+                }
+                columns.append(quote(field.getSimpleName().toString()));
+                columnTypes.append(erasure(field.asType())).append(".class");
+            }
+            line(1, "private static final java.util.List<String> COLUMNS = java.util.Collections.unmodifiableList(java.util.Arrays.asList(" + columns + "));");
+            line(1, "private static final java.util.List<Class<?>> COLUMN_TYPES = java.util.Collections.unmodifiableList(java.util.Arrays.<Class<?>>asList(" + columnTypes + "));");
+            line(0, "");
+            method("public Class<" + entity + "> getEntityClass()", "return " + entity + ".class;");
+            method("public String getTable()", "return " + quote(type.getAnnotation(Table.class).value()) + ";");
+            method("public java.util.List<String> getColumnNames()", "return COLUMNS;");
+            method("public java.util.List<Class<?>> getColumnTypes()", "return COLUMN_TYPES;");
+            writeGetAccessor();
+            ExecutableElement noArgsConstructor = findConstructor(new ArrayList<>());
+            List<TypeMirror> fieldTypes = new ArrayList<>();
+            for (VariableElement field : fields) {
+                fieldTypes.add(field.asType());
+            }
+            ExecutableElement allArgsConstructor = fields.isEmpty() ? null : findConstructor(fieldTypes);
+            method("public boolean hasNoArgsConstructor()", "return " + (noArgsConstructor != null) + ";");
+            method("public " + entity + " newInstance()", noArgsConstructor != null ? "return new " + entity + "();" : unsupported("has no public constructor without arguments"));
+            method("public boolean hasAllArgsConstructor()", "return " + (allArgsConstructor != null) + ";");
+            if (allArgsConstructor != null) {
+                StringBuilder arguments = new StringBuilder();
+                for (int i = 0; i < fields.size(); i++) {
+                    if (i > 0) {
+                        arguments.append(", ");
+                    }
+                    arguments.append("(").append(boxedName(fields.get(i).asType())).append(") values[").append(i).append("]");
+                }
+                method("public " + entity + " newInstance(Object[] values)", "return new " + entity + "(" + arguments + ");");
+            } else {
+                method("public " + entity + " newInstance(Object[] values)", unsupported("has no public constructor with all fields as arguments"));
+            }
+            line(0, "}");
+            return source.toString();
+        }
+
+        private void writeGetAccessor() {
+            line(1, "@Override");
+            line(1, "public " + ACCESSOR + " getAccessor(String column) {");
+            line(2, "switch (column) {");
+            for (VariableElement field : fields) {
+                line(3, "case " + quote(field.getSimpleName().toString()) + ":");
+                line(4, "return new " + ACCESSOR + "() {");
+                writeAccessor(field);
+                line(4, "};");
+            }
+            line(3, "default:");
+            line(4, "throw new IllegalArgumentException(\"No column \" + column + \" in \" + " + entity + ".class);");
+            line(2, "}");
+            line(1, "}");
+            line(0, "");
+        }
+
+        private void writeAccessor(VariableElement field) {
+            String reference;
+            if (field.getModifiers().contains(Modifier.STATIC)) {
+                reference = entity + "." + field.getSimpleName();
+            } else {
+                reference = "((" + entity + ") target)." + field.getSimpleName();
+            }
+            boolean isFinal = field.getModifiers().contains(Modifier.FINAL);
+            TypeMirror fieldType = field.asType();
+            String primitive = getAccessorPrimitive(fieldType);
+            String suffix = primitive == null ? null : Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+            accessorMethod("public Object get(Object target)", "return " + reference + ";");
+            if (primitive != null) {
+                accessorMethod("public " + primitive + " get" + suffix + "(Object target)", "return " + reference + ";");
+            }
+            if (isFinal) {
+                //The primitive setters of the super class delegate to this method
+                String cannotSet = "throw new RuntimeException(\"Field " + entity + "." + field.getSimpleName() + " is final and can not be set\");";
+                accessorMethod("public void set(Object target, Object value)", cannotSet);
+            } else {
+                accessorMethod("public void set(Object target, Object value)", reference + " = (" + boxedName(fieldType) + ") value;");
+                if (primitive != null) {
+                    accessorMethod("public void set" + suffix + "(Object target, " + primitive + " value)", reference + " = value;");
+                }
+            }
+        }
+
+        /**
+         * @return the primitive type if {@link be.bagofwords.miniorm.mapping.FieldAccessor} has accessors for it
+         */
+        private String getAccessorPrimitive(TypeMirror fieldType) {
+            switch (fieldType.getKind()) {
+                case INT:
+                    return "int";
+                case LONG:
+                    return "long";
+                case DOUBLE:
+                    return "double";
+                case BOOLEAN:
+                    return "boolean";
+                default:
+                    return null;
+            }
+        }
+
+        private ExecutableElement findConstructor(List<TypeMirror> parameterTypes) {
+            if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+                return null;
+            }
+            for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+                if (constructor.getModifiers().contains(Modifier.PUBLIC) && hasParameterTypes(constructor, parameterTypes)) {
+                    return constructor;
+                }
+            }
+            return null;
+        }
+
+        private boolean hasParameterTypes(ExecutableElement constructor, List<TypeMirror> parameterTypes) {
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if (parameters.size() != parameterTypes.size()) {
+                return false;
+            }
+            for (int i = 0; i < parameters.size(); i++) {
+                if (!processingEnv.getTypeUtils().isSameType(erasure(parameters.get(i).asType()), erasure(parameterTypes.get(i)))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String boxedName(TypeMirror fieldType) {
+            if (fieldType.getKind().isPrimitive()) {
+                return processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) fieldType).getQualifiedName().toString();
+            }
+            return erasure(fieldType).toString();
+        }
+
+        private TypeMirror erasure(TypeMirror typeMirror) {
+            return processingEnv.getTypeUtils().erasure(typeMirror);
+        }
+
+        private String unsupported(String reason) {
+            return "throw new UnsupportedOperationException(\"" + entity + " " + reason + "\");";
+        }
+
+        private void method(String signature, String body) {
+            line(1, "@Override");
+            line(1, signature + " {");
+            line(2, body);
+            line(1, "}");
+            line(0, "");
+        }
+
+        private void accessorMethod(String signature, String body) {
+            line(5, "@Override");
+            line(5, signature + " {");
+            line(6, body);
+            line(5, "}");
+        }
+
+        private void line(int indentation, String line) {
+            for (int i = 0; i < indentation; i++) {
+                source.append("    ");
+            }
+            source.append(line).append("\n");
+        }
+
+        private String quote(String value) {
+            return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    }
+}
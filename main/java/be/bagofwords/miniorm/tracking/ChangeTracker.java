@@ -0,0 +1,95 @@
+package be.bagofwords.miniorm.tracking;
+
+import be.bagofwords.miniorm.mapping.ColumnMapping;
+import be.bagofwords.miniorm.mapping.EntityMapping;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a snapshot of the column values of every tracked object, for as long as the object itself is reachable. Objects
+ * are compared by identity, so entities that override equals() and hashCode() are tracked correctly.
+ */
+public class ChangeTracker {
+
+    private final Map<IdentityKey, Object[]> snapshots = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> collectedObjects = new ReferenceQueue<>();
+
+    public void snapshot(EntityMapping<?> mapping, Object object) {
+        expungeCollectedObjects();
+        List<ColumnMapping> columns = mapping.getColumns();
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            values[i] = ColumnMapping.copyValue(columns.get(i).accessor.get(object));
+        }
+        snapshots.put(new IdentityKey(object, collectedObjects), values);
+    }
+
+    /**
+     * @return the indexes in {@link EntityMapping#getColumns(boolean) mapping.getColumns(false)} of the columns that
+     * changed since the last snapshot, or null if this object is not tracked
+     */
+    public BitSet getChangedColumns(EntityMapping<?> mapping, Object object) {
+        Object[] values = snapshots.get(new IdentityKey(object, null));
+        if (values == null) {
+            return null;
+        }
+        List<ColumnMapping> columns = mapping.getColumns();
+        BitSet changedColumns = new BitSet();
+        int ind = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnMapping column = columns.get(i);
+            if (!column.isId()) {
+                if (!Objects.deepEquals(values[i], column.accessor.get(object))) {
+                    changedColumns.set(ind);
+                }
+                ind++;
+            }
+        }
+        return changedColumns;
+    }
+
+    public void forget(Object object) {
+        snapshots.remove(new IdentityKey(object, null));
+    }
+
+    private void expungeCollectedObjects() {
+        Reference<?> reference;
+        while ((reference = collectedObjects.poll()) != null) {
+            snapshots.remove(reference);
+        }
+    }
+
+    private static class IdentityKey extends WeakReference<Object> {
+
+        private final int hash;
+
+        private IdentityKey(Object object, ReferenceQueue<Object> queue) {
+            super(object, queue);
+            this.hash = System.identityHashCode(object);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof IdentityKey)) {
+                return false;
+            }
+            Object object = get();
+            return object != null && object == ((IdentityKey) other).get();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package be.bagofwords.miniorm.workload;
+
+/**
+ * A wait for a connection from the pool
+ */
+public class CheckoutEvent {
+    /**
+     * Start of the wait in microseconds since the start of the recording
+     */
+    public final long startMicros;
+    public final long durationMicros;
+    public final long thread;
+
+    public CheckoutEvent(long startMicros, long durationMicros, long thread) {
+        this.startMicros = startMicros;
+        this.durationMicros = durationMicros;
+        this.thread = thread;
+    }
+}
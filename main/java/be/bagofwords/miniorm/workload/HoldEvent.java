@@ -0,0 +1,27 @@
+package be.bagofwords.miniorm.workload;
+
+/**
+ * A connection that was taken from the pool and returned. Statements of the same thread that started in between were
+ * executed on this connection.
+ */
+public class HoldEvent {
+    /**
+     * Time in microseconds since the start of the recording at which the connection was taken from the pool
+     */
+    public final long startMicros;
+    public final long durationMicros;
+    public final long thread;
+
+    public HoldEvent(long startMicros, long durationMicros, long thread) {
+        this.startMicros = startMicros;
+        this.durationMicros = durationMicros;
+        this.thread = thread;
+    }
+
+    /**
+     * @return true if the statement was executed by the same thread while it held this connection
+     */
+    public boolean contains(WorkloadEvent statement) {
+        return statement.thread == thread && statement.startMicros >= startMicros && statement.startMicros <= startMicros + durationMicros;
+    }
+}
@@ -0,0 +1,40 @@
+package be.bagofwords.miniorm.workload;
+
+import java.util.List;
+
+/**
+ * The contents of a workload file, see {@link WorkloadRecorder}
+ */
+public class Workload {
+    public final long startEpochMillis;
+    /**
+     * Ordered by start
+     */
+    public final List<WorkloadEvent> statements;
+    /**
+     * Ordered by start
+     */
+    public final List<CheckoutEvent> checkouts;
+    /**
+     * Ordered by start
+     */
+    public final List<HoldEvent> holds;
+
+    public Workload(long startEpochMillis, List<WorkloadEvent> statements, List<CheckoutEvent> checkouts, List<HoldEvent> holds) {
+        this.startEpochMillis = startEpochMillis;
+        this.statements = statements;
+        this.checkouts = checkouts;
+        this.holds = holds;
+    }
+
+    /**
+     * @return the time in microseconds between the start of the recording and the end of the last statement
+     */
+    public long getDurationMicros() {
+        long duration = 0;
+        for (WorkloadEvent statement : statements) {
+            duration = Math.max(duration, statement.startMicros + statement.durationMicros);
+        }
+        return duration;
+    }
+}
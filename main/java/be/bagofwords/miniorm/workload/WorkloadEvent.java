@@ -0,0 +1,51 @@
+package be.bagofwords.miniorm.workload;
+
+/**
+ * A single statement, or batch of statements, that was executed by the {@link be.bagofwords.miniorm.DatabaseService}.
+ * Only the shape of the parameters is recorded, never their values.
+ */
+public class WorkloadEvent {
+    /**
+     * Start of the statement in microseconds since the start of the recording
+     */
+    public final long startMicros;
+    public final long durationMicros;
+    public final long thread;
+    public final String entity;
+    public final String operation;
+    /**
+     * The statement with placeholders, or null if the operation consisted of several different statements
+     */
+    public final String sql;
+    /**
+     * Number of times the parameters were bound to the statement, larger than 1 for batches
+     */
+    public final int numOfParameterSets;
+    /**
+     * The {@link java.sql.Types} of every parameter
+     */
+    public final int[] parameterTypes;
+    /**
+     * Length of every string or byte array parameter, 0 if unknown or not applicable
+     */
+    public final int[] parameterLengths;
+    public final long numOfRows;
+
+    public WorkloadEvent(long startMicros, long durationMicros, long thread, String entity, String operation, String sql, int numOfParameterSets, int[] parameterTypes, int[] parameterLengths, long numOfRows) {
+        this.startMicros = startMicros;
+        this.durationMicros = durationMicros;
+        this.thread = thread;
+        this.entity = entity;
+        this.operation = operation;
+        this.sql = sql;
+        this.numOfParameterSets = numOfParameterSets;
+        this.parameterTypes = parameterTypes;
+        this.parameterLengths = parameterLengths;
+        this.numOfRows = numOfRows;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " on " + entity + " at " + startMicros + "us took " + durationMicros + "us: " + sql;
+    }
+}
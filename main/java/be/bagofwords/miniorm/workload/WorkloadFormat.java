@@ -0,0 +1,71 @@
+package be.bagofwords.miniorm.workload;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary format of a workload file. After a header with the magic number, the version and the time at which recording
+ * started, the file contains a sequence of records that each start with a tag:
+ * <ul>
+ * <li>{@link #TAG_STRING}: id, length and UTF-8 bytes of an entity, operation or SQL statement. Later records refer to
+ * strings by id, so every statement is written only once.</li>
+ * <li>{@link #TAG_STATEMENT}: start and duration in microseconds, thread, entity, operation, SQL, the number of parameter
+ * sets (larger than 1 for batches), the type and length of every parameter and the number of rows.</li>
+ * <li>{@link #TAG_CHECKOUT}: start and duration in microseconds of waiting for a connection from the pool, and the
+ * thread.</li>
+ * <li>{@link #TAG_HOLD}: start and duration in microseconds of holding a connection from the pool, and the thread.
+ * Statements of the same thread that start while it holds a connection were executed on that connection.</li>
+ * </ul>
+ * Numbers are written as variable length integers, so most records take only a few tens of bytes.
+ */
+class WorkloadFormat {
+
+    static final int MAGIC = 0x4d4f524d;
+    static final int VERSION = 1;
+
+    static final int TAG_STRING = 1;
+    static final int TAG_STATEMENT = 2;
+    static final int TAG_CHECKOUT = 3;
+    static final int TAG_HOLD = 4;
+
+    /**
+     * Id of a missing string, e.g. the SQL of an operation that has no single statement
+     */
+    static final int NO_STRING = 0;
+
+    private WorkloadFormat() {
+    }
+
+    static void writeVarLong(DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Zigzag encoding, for values that can be negative such as {@link java.sql.Types}
+     */
+    static void writeSignedVarLong(DataOutput output, long value) throws IOException {
+        writeVarLong(output, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSignedVarLong(DataInput input) throws IOException {
+        long value = readVarLong(input);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
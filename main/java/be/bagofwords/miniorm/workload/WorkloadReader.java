@@ -0,0 +1,94 @@
+package be.bagofwords.miniorm.workload;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a file written by {@link WorkloadRecorder}. A file that was cut off, for example because the application was
+ * killed while recording, is read up to the last complete record.
+ */
+public class WorkloadReader {
+
+    private WorkloadReader() {
+    }
+
+    public static Workload read(File file) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (input.readInt() != WorkloadFormat.MAGIC) {
+                throw new RuntimeException("File " + file + " is not a workload file");
+            }
+            int version = input.readUnsignedByte();
+            if (version != WorkloadFormat.VERSION) {
+                throw new RuntimeException("Unsupported version " + version + " of workload file " + file);
+            }
+            long startEpochMillis = input.readLong();
+            Map<Integer, String> strings = new HashMap<>();
+            List<WorkloadEvent> statements = new ArrayList<>();
+            List<CheckoutEvent> checkouts = new ArrayList<>();
+            List<HoldEvent> holds = new ArrayList<>();
+            try {
+                int tag;
+                while ((tag = input.read()) != -1) {
+                    if (tag == WorkloadFormat.TAG_STRING) {
+                        int id = (int) WorkloadFormat.readVarLong(input);
+                        byte[] bytes = new byte[(int) WorkloadFormat.readVarLong(input)];
+                        input.readFully(bytes);
+                        strings.put(id, new String(bytes, StandardCharsets.UTF_8));
+                    } else if (tag == WorkloadFormat.TAG_STATEMENT) {
+                        statements.add(readStatement(input, strings));
+                    } else if (tag == WorkloadFormat.TAG_CHECKOUT) {
+                        long startMicros = WorkloadFormat.readVarLong(input);
+                        long durationMicros = WorkloadFormat.readVarLong(input);
+                        long thread = WorkloadFormat.readVarLong(input);
+                        checkouts.add(new CheckoutEvent(startMicros, durationMicros, thread));
+                    } else if (tag == WorkloadFormat.TAG_HOLD) {
+                        long startMicros = WorkloadFormat.readVarLong(input);
+                        long durationMicros = WorkloadFormat.readVarLong(input);
+                        long thread = WorkloadFormat.readVarLong(input);
+                        holds.add(new HoldEvent(startMicros, durationMicros, thread));
+                    } else {
+                        throw new RuntimeException("Unknown record " + tag + " in workload file " + file);
+                    }
+                }
+            } catch (EOFException e) {
+                //Last record is incomplete, ignore it
+            }
+            //Records are written when a statement ends, not when it starts
+            statements.sort(Comparator.comparingLong(statement -> statement.startMicros));
+            checkouts.sort(Comparator.comparingLong(checkout -> checkout.startMicros));
+            holds.sort(Comparator.comparingLong(hold -> hold.startMicros));
+            return new Workload(startEpochMillis, statements, checkouts, holds);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read workload file " + file, e);
+        }
+    }
+
+    private static WorkloadEvent readStatement(DataInputStream input, Map<Integer, String> strings) throws IOException {
+        long startMicros = WorkloadFormat.readVarLong(input);
+        long durationMicros = WorkloadFormat.readVarLong(input);
+        long thread = WorkloadFormat.readVarLong(input);
+        String entity = strings.get((int) WorkloadFormat.readVarLong(input));
+        String operation = strings.get((int) WorkloadFormat.readVarLong(input));
+        String sql = strings.get((int) WorkloadFormat.readVarLong(input));
+        int numOfParameterSets = (int) WorkloadFormat.readVarLong(input);
+        int numOfParameters = (int) WorkloadFormat.readVarLong(input);
+        int[] parameterTypes = new int[numOfParameters];
+        int[] parameterLengths = new int[numOfParameters];
+        for (int i = 0; i < numOfParameters; i++) {
+            parameterTypes[i] = (int) WorkloadFormat.readSignedVarLong(input);
+            parameterLengths[i] = (int) WorkloadFormat.readVarLong(input);
+        }
+        long numOfRows = WorkloadFormat.readVarLong(input);
+        return new WorkloadEvent(startMicros, durationMicros, thread, entity, operation, sql, numOfParameterSets, parameterTypes, parameterLengths, numOfRows);
+    }
+}
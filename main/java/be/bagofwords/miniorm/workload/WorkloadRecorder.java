@@ -0,0 +1,232 @@
+package be.bagofwords.miniorm.workload;
+
+import be.bagofwords.logging.Log;
+import be.bagofwords.miniorm.mapping.ColumnMapping;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the statements executed by the {@link be.bagofwords.miniorm.DatabaseService}, the waits for connections and the
+ * time connections were held to a compact binary file, see {@link WorkloadFormat}. The values of parameters are never
+ * written, only their type and length, so a recording does not contain any data of the database. Read a recording with
+ * {@link WorkloadReader}.
+ * <p>
+ * Records are written to a buffer under a short lock, the buffer is written to the file when it is full. If writing
+ * fails, the recording stops and the error is logged once.
+ */
+public class WorkloadRecorder implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Statements are usually constants, but nothing prevents callers from building them dynamically. Strings beyond this
+     * number are written again every time they are used.
+     */
+    private static final int MAX_INTERNED_STRINGS = 100_000;
+
+    private final File file;
+    private final long startNanos;
+    private final DataOutputStream output;
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private int nextStringId = WorkloadFormat.NO_STRING + 1;
+    private long numOfStatements;
+    private boolean closed;
+
+    public WorkloadRecorder(File file) {
+        this.file = file;
+        try {
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+            output.writeInt(WorkloadFormat.MAGIC);
+            output.writeByte(WorkloadFormat.VERSION);
+            output.writeLong(System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create workload file " + file, e);
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records a statement with the given parameters
+     *
+     * @param start the value of {@link System#nanoTime()} when the statement started
+     */
+    public void recordStatement(String entity, String operation, String sql, Object[] args, long start, long end, long numOfRows) {
+        int numOfArgs = args == null ? 0 : args.length;
+        int[] types = new int[numOfArgs];
+        int[] lengths = new int[numOfArgs];
+        for (int i = 0; i < numOfArgs; i++) {
+            Object arg = args[i];
+            types[i] = getType(arg);
+            lengths[i] = getLength(arg);
+        }
+        write(entity, operation, sql, 1, types, lengths, start, end, numOfRows);
+    }
+
+    /**
+     * Records a statement that was executed once for every object, with the columns of the object as parameters
+     *
+     * @param whereColumn column that is bound after the other columns, such as the id of an update, or null
+     */
+    public void recordObjectStatement(String entity, String operation, String sql, List<ColumnMapping> columns, ColumnMapping whereColumn, int numOfObjects, long start, long end, long numOfRows) {
+        int numOfParameters = columns.size() + (whereColumn == null ? 0 : 1);
+        int[] types = new int[numOfParameters];
+        for (int i = 0; i < columns.size(); i++) {
+            types[i] = columns.get(i).sqlType;
+        }
+        if (whereColumn != null) {
+            types[numOfParameters - 1] = whereColumn.sqlType;
+        }
+        write(entity, operation, sql, numOfObjects, types, new int[numOfParameters], start, end, numOfRows);
+    }
+
+    public void recordCheckout(long start, long end) {
+        writeInterval(WorkloadFormat.TAG_CHECKOUT, start, end);
+    }
+
+    /**
+     * Records the time between taking a connection from the pool and returning it
+     */
+    public void recordHold(long start, long end) {
+        writeInterval(WorkloadFormat.TAG_HOLD, start, end);
+    }
+
+    private synchronized void writeInterval(int tag, long start, long end) {
+        if (closed) {
+            return;
+        }
+        try {
+            output.writeByte(tag);
+            WorkloadFormat.writeVarLong(output, toMicros(start - startNanos));
+            WorkloadFormat.writeVarLong(output, toMicros(end - start));
+            WorkloadFormat.writeVarLong(output, Thread.currentThread().getId());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void write(String entity, String operation, String sql, int numOfParameterSets, int[] types, int[] lengths, long start, long end, long numOfRows) {
+        if (closed) {
+            return;
+        }
+        try {
+            int entityId = getStringId(entity);
+            int operationId = getStringId(operation);
+            int sqlId = getStringId(sql);
+            output.writeByte(WorkloadFormat.TAG_STATEMENT);
+            WorkloadFormat.writeVarLong(output, toMicros(start - startNanos));
+            WorkloadFormat.writeVarLong(output, toMicros(end - start));
+            WorkloadFormat.writeVarLong(output, Thread.currentThread().getId());
+            WorkloadFormat.writeVarLong(output, entityId);
+            WorkloadFormat.writeVarLong(output, operationId);
+            WorkloadFormat.writeVarLong(output, sqlId);
+            WorkloadFormat.writeVarLong(output, numOfParameterSets);
+            WorkloadFormat.writeVarLong(output, types.length);
+            for (int i = 0; i < types.length; i++) {
+                WorkloadFormat.writeSignedVarLong(output, types[i]);
+                WorkloadFormat.writeVarLong(output, lengths[i]);
+            }
+            WorkloadFormat.writeVarLong(output, Math.max(0, numOfRows));
+            numOfStatements++;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private int getStringId(String value) throws IOException {
+        if (value == null) {
+            return WorkloadFormat.NO_STRING;
+        }
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        id = nextStringId++;
+        if (stringIds.size() < MAX_INTERNED_STRINGS) {
+            stringIds.put(value, id);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeByte(WorkloadFormat.TAG_STRING);
+        WorkloadFormat.writeVarLong(output, id);
+        WorkloadFormat.writeVarLong(output, bytes.length);
+        output.write(bytes);
+        return id;
+    }
+
+    private static int getType(Object arg) {
+        if (arg == null) {
+            return Types.NULL;
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            return Types.INTEGER;
+        } else if (arg instanceof Long) {
+            return Types.BIGINT;
+        } else if (arg instanceof Double || arg instanceof Float) {
+            return Types.DOUBLE;
+        } else if (arg instanceof Boolean) {
+            return Types.BOOLEAN;
+        } else if (arg instanceof byte[]) {
+            return Types.VARBINARY;
+        } else if (arg instanceof Date) {
+            return Types.TIMESTAMP;
+        } else if (arg instanceof String || arg instanceof Enum) {
+            return Types.VARCHAR;
+        } else {
+            return Types.OTHER;
+        }
+    }
+
+    private static int getLength(Object arg) {
+        if (arg instanceof String) {
+            return ((String) arg).length();
+        } else if (arg instanceof Enum) {
+            return ((Enum) arg).name().length();
+        } else if (arg instanceof byte[]) {
+            return ((byte[]) arg).length;
+        } else {
+            return 0;
+        }
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    private void fail(IOException e) {
+        Log.e("Failed to write to workload file " + file + ", stopped recording", e);
+        closeOutput();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized long getNumOfStatements() {
+        return numOfStatements;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closeOutput();
+            Log.i("Recorded " + numOfStatements + " statements to " + file);
+        }
+    }
+
+    private void closeOutput() {
+        closed = true;
+        try {
+            output.close();
+        } catch (IOException e) {
+            Log.e("Failed to close workload file " + file, e);
+        }
+    }
+}